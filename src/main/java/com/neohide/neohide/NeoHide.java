@@ -21,11 +21,20 @@ public class NeoHide extends JavaPlugin {
     private HideManager hideManager;
     private DatabaseManager databaseManager;
     private WebServerManager webServerManager;
+    private LiveEventBus eventBus;
+    private MutationQueue mutationQueue;
+    private TimeSlicedScheduler sliceScheduler;
 
     @Override
     public void onEnable() {
         instance = this;
 
+        // Шина событий живой ленты веб-панели
+        this.eventBus = new LiveEventBus();
+
+        // Изменения из веб-API применяются в основном потоке
+        this.mutationQueue = new MutationQueue(this);
+
         // Инициализация менеджеров
         this.configManager = new ConfigManager(this);
         this.commandManager = new CommandManager(this);
@@ -36,6 +45,9 @@ public class NeoHide extends JavaPlugin {
         // Загрузка конфигурации
         configManager.loadConfig();
 
+        // Массовая работа по игрокам выполняется кусками с бюджетом на тик
+        this.sliceScheduler = new TimeSlicedScheduler(this, configManager.getSweepBudgetMicros());
+
         // 🔥 ГЕНЕРАЦИЯ ТОКЕНА ТОЛЬКО ПРИ ПЕРВОМ ЗАПУСКЕ 🔥
         generateTokenIfNeeded();
 
@@ -48,6 +60,9 @@ public class NeoHide extends JavaPlugin {
         // Загрузка скрытых команд из БД
         loadHiddenCommandsFromDB();
 
+        // Журнал состояния игроков (ваниш, скрытие, шпионаж)
+        hideManager.loadData();
+
         // Регистрация событий
         registerEvents();
 
@@ -136,14 +151,29 @@ public class NeoHide extends JavaPlugin {
 
     @Override
     public void onDisable() {
-        // Восстановление оригинальных команд
-        commandManager.restoreCommands();
-
         // Остановка веб-сервера
         if (webServerManager != null) {
             webServerManager.stop();
         }
 
+        // Применяем изменения, принятые веб-API до остановки
+        if (mutationQueue != null) {
+            mutationQueue.shutdown();
+        }
+
+        // Доделываем незавершённые проходы по игрокам
+        if (sliceScheduler != null) {
+            sliceScheduler.shutdown();
+        }
+
+        // Восстановление оригинальных команд
+        commandManager.restoreCommands();
+
+        // Дописываем журнал состояния игроков
+        if (hideManager != null) {
+            hideManager.saveData();
+        }
+
         // Закрытие соединения с БД
         if (databaseManager != null) {
             databaseManager.close();
@@ -155,7 +185,11 @@ public class NeoHide extends JavaPlugin {
     private void registerEvents() {
         getServer().getPluginManager().registerEvents(new CommandListener(this), this);
         getServer().getPluginManager().registerEvents(new TabCompleteListener(this), this);
-        getServer().getPluginManager().registerEvents(new PermissionListener(this), this);
+        PermissionListener permissionListener = new PermissionListener(this);
+        getServer().getPluginManager().registerEvents(permissionListener, this);
+        permissionListener.hookLuckPerms();
+        getServer().getPluginManager().registerEvents(new HideListener(this), this);
+        getServer().getPluginManager().registerEvents(new CommandMapListener(this), this);
 
         if (configManager.isOpProtectionEnabled()) {
             getServer().getPluginManager().registerEvents(new OpListener(this), this);
@@ -168,19 +202,18 @@ public class NeoHide extends JavaPlugin {
     }
 
     private void startTasks() {
-        // Таймер для периодической проверки защиты
-        if (configManager.isAutoProtectionEnabled()) {
-            getServer().getScheduler().runTaskTimer(this, () -> {
-                permissionProtection.checkAndFixPermissions();
-            }, 6000L, 6000L); // Каждые 5 минут
+        sliceScheduler.start();
+
+        // Слежение за командами, которые регистрируются после нас
+        int watchInterval = configManager.getCommandWatchIntervalTicks();
+        if (watchInterval > 0) {
+            getServer().getScheduler().runTaskTimer(this, commandManager::checkCommandMap, watchInterval, watchInterval);
         }
 
-        // Таймер для сохранения данных в БД
-        getServer().getScheduler().runTaskTimerAsynchronously(this, () -> {
-            if (databaseManager.isConnected()) {
-                savePlayerDataToDB();
-            }
-        }, 6000L, 6000L); // Каждые 5 минут
+        // Проверка защиты прав: помеченные игроки и несколько игроков по кругу каждый тик
+        if (configManager.isAutoProtectionEnabled()) {
+            getServer().getScheduler().runTaskTimer(this, permissionProtection::tick, 1L, 1L);
+        }
     }
 
     private void loadHiddenCommandsFromDB() {
@@ -197,22 +230,6 @@ public class NeoHide extends JavaPlugin {
         }
     }
 
-    private void savePlayerDataToDB() {
-        for (org.bukkit.entity.Player player : getServer().getOnlinePlayers()) {
-            boolean isHidden = hideManager.isPlayerHidden(player);
-            boolean isVanished = hideManager.isVanished(player);
-            boolean commandSpy = hideManager.hasCommandSpyEnabled(player);
-
-            databaseManager.savePlayerData(
-                    player.getUniqueId(),
-                    player.getName(),
-                    isHidden,
-                    isVanished,
-                    commandSpy
-            );
-        }
-    }
-
     public static NeoHide getInstance() {
         return instance;
     }
@@ -240,4 +257,16 @@ public class NeoHide extends JavaPlugin {
     public WebServerManager getWebServerManager() {
         return webServerManager;
     }
+
+    public LiveEventBus getEventBus() {
+        return eventBus;
+    }
+
+    public MutationQueue getMutationQueue() {
+        return mutationQueue;
+    }
+
+    public TimeSlicedScheduler getSliceScheduler() {
+        return sliceScheduler;
+    }
 }
\ No newline at end of file
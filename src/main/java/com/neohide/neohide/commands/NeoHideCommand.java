@@ -6,7 +6,11 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.bukkit.ChatColor;
 import com.neohide.neohide.NeoHide;
+import com.neohide.neohide.managers.ConnectionPool;
+import com.neohide.neohide.managers.DatabaseWriteQueue;
+import com.neohide.neohide.util.CommandVerdictCache;
 import java.util.List;
+import java.util.Map;
 
 public class NeoHideCommand implements CommandExecutor {
 
@@ -37,6 +41,8 @@ public class NeoHideCommand implements CommandExecutor {
                 plugin.getConfigManager().reloadConfig();
                 plugin.getCommandManager().restoreCommands();
                 plugin.getCommandManager().setupCommands();
+                plugin.getPermissionProtection().reapplyProtection();
+                plugin.getPermissionProtection().checkAndFixPermissions();
                 sender.sendMessage(ChatColor.GREEN + "Конфигурация NeoHide перезагружена!");
                 break;
 
@@ -92,6 +98,8 @@ public class NeoHideCommand implements CommandExecutor {
                     return true;
                 }
                 plugin.getConfigManager().addProtectedPermission(args[1]);
+                plugin.getPermissionProtection().reapplyProtection();
+                plugin.getPermissionProtection().checkAndFixPermissions();
                 sender.sendMessage(ChatColor.GREEN + "Право " + args[1] + " теперь защищено!");
                 break;
 
@@ -284,6 +292,18 @@ public class NeoHideCommand implements CommandExecutor {
         sender.sendMessage(ChatColor.YELLOW + "🔐 Защищено прав: " +
                 ChatColor.WHITE + plugin.getConfigManager().getProtectedPermissions().size());
 
+        Map<String, Object> permissionMemory = plugin.getPermissionProtection().getMemoryStats();
+        sender.sendMessage(ChatColor.YELLOW + "💾 Права игроков в памяти: " + ChatColor.WHITE +
+                String.format("%.1f КБ", ((Number) permissionMemory.get("total_bytes")).longValue() / 1024.0) +
+                " (игроков " + permissionMemory.get("players") +
+                ", различных прав " + permissionMemory.get("distinct_permissions") + ")");
+
+        CommandVerdictCache verdictCache = plugin.getConfigManager().getVerdictCache();
+        sender.sendMessage(ChatColor.YELLOW + "⚡ Кэш проверок: " + ChatColor.WHITE +
+                "попаданий " + verdictCache.getHits() +
+                ", промахов " + verdictCache.getMisses() +
+                ", вытеснено " + verdictCache.getEvictions());
+
         // Информация о веб-интерфейсе
         boolean webEnabled = plugin.getConfigManager().isWebEnabled();
         String token = plugin.getConfigManager().getWebAuthToken();
@@ -305,6 +325,25 @@ public class NeoHideCommand implements CommandExecutor {
         sender.sendMessage(ChatColor.YELLOW + "🗄️  База данных: " +
                 (dbConnected ? ChatColor.GREEN + "Подключена" : ChatColor.RED + "Ошибка"));
 
+        ConnectionPool pool = plugin.getDatabaseManager().getPool();
+        if (pool != null) {
+            Map<String, Object> poolStats = pool.getStats();
+            sender.sendMessage(ChatColor.YELLOW + "🔌 Пул соединений: " + ChatColor.WHITE +
+                    "занято " + poolStats.get("in_use") + "/" + poolStats.get("size") +
+                    ", ожидание " + poolStats.get("avg_wait_ms") + " мс" +
+                    ", утечек " + poolStats.get("leaks_detected"));
+        }
+
+        DatabaseWriteQueue writeQueue = plugin.getDatabaseManager().getWriteQueue();
+        if (writeQueue != null) {
+            Map<String, Object> queueStats = writeQueue.getStats();
+            sender.sendMessage(ChatColor.YELLOW + "📝 Очередь записи: " + ChatColor.WHITE +
+                    "в очереди " + queueStats.get("queue_depth") +
+                    ", пачка " + queueStats.get("avg_batch_size") +
+                    ", запись " + queueStats.get("avg_flush_ms") + " мс" +
+                    ", потеряно " + queueStats.get("rows_dropped"));
+        }
+
         sender.sendMessage(ChatColor.GOLD + "════════════════════════════════════════");
     }
 }
\ No newline at end of file
@@ -1,11 +1,17 @@
 package com.neohide.neohide.listeners;
 
+import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerCommandPreprocessEvent;
 import org.bukkit.event.server.ServerCommandEvent;
 import com.neohide.neohide.NeoHide;
+import com.neohide.neohide.managers.LiveEventBus;
+import com.neohide.neohide.util.CommandLabel;
+
+import java.util.HashMap;
+import java.util.Map;
 
 public class CommandListener implements Listener {
 
@@ -21,14 +27,21 @@ public class CommandListener implements Listener {
             return;
         }
 
-        String command = event.getMessage().split(" ")[0].toLowerCase().replace("/", "");
+        // Разбираем метку без промежуточных строк
+        CommandLabel label = CommandLabel.parse(event.getMessage());
 
         // Проверяем, скрыта ли команда
-        if (plugin.getConfigManager().isCommandHidden(command)) {
+        if (plugin.getConfigManager().isCommandHidden(label)) {
             event.setCancelled(true);
 
+            // Строки создаём только для заблокированных команд
+            String command = label.toString();
+
             // Показываем фейковый ответ если настроено
             String fakeResponse = plugin.getCommandManager().getFakeResponse(command);
+            if (fakeResponse == null && label.hasNamespace()) {
+                fakeResponse = plugin.getCommandManager().getFakeResponse(label.label());
+            }
             if (fakeResponse != null) {
                 event.getPlayer().sendMessage(fakeResponse);
             } else {
@@ -36,7 +49,7 @@ public class CommandListener implements Listener {
             }
 
             // Логируем попытку
-            logCommandAttempt(event.getPlayer().getName(), command, event.getMessage());
+            logCommandAttempt(event.getPlayer(), command, event.getMessage());
         }
     }
 
@@ -46,7 +59,12 @@ public class CommandListener implements Listener {
         // (можно добавить фильтрацию для консоли если нужно)
     }
 
-    private void logCommandAttempt(String player, String command, String fullCommand) {
+    private void logCommandAttempt(Player sender, String command, String fullCommand) {
+        String player = sender.getName();
+
+        // Запись в БД уходит в очередь и не задерживает основной поток
+        plugin.getDatabaseManager().logAction(sender.getUniqueId(), player, "COMMAND_BLOCKED", command, fullCommand);
+
         if (plugin.getConfigManager().isLogToConsole()) {
             plugin.getLogger().info(String.format(
                     "[BLOCKED] %s пытался выполнить: %s",
@@ -54,6 +72,16 @@ public class CommandListener implements Listener {
             ));
         }
 
+        // Живая лента веб-панели
+        LiveEventBus eventBus = plugin.getEventBus();
+        if (eventBus.hasSubscribers()) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("player", player);
+            data.put("uuid", sender.getUniqueId().toString());
+            data.put("command", command);
+            eventBus.publish("command_blocked", data);
+        }
+
         // Оповещение админов в игре
         String alert = String.format("§c[NeoHide] §fИгрок §e%s §fпытался выполнить скрытую команду: §c%s",
                 player, command);
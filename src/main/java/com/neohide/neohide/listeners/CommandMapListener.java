@@ -0,0 +1,43 @@
+package com.neohide.neohide.listeners;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.server.PluginDisableEvent;
+import org.bukkit.event.server.PluginEnableEvent;
+import org.bukkit.event.server.ServerLoadEvent;
+import com.neohide.neohide.NeoHide;
+
+/**
+ * Скрывает команды плагинов, которые включились после NeoHide
+ * (порядок загрузки, PlugMan и подобные менеджеры плагинов)
+ */
+public class CommandMapListener implements Listener {
+
+    private final NeoHide plugin;
+
+    public CommandMapListener(NeoHide plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginEnable(PluginEnableEvent event) {
+        if (event.getPlugin() != plugin) {
+            // Команды из plugin.yml уже в карте: событие приходит после onEnable
+            plugin.getCommandManager().rescanCommandMap();
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginDisable(PluginDisableEvent event) {
+        if (event.getPlugin() != plugin) {
+            plugin.getCommandManager().forgetCommands(event.getPlugin());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onServerLoad(ServerLoadEvent event) {
+        // Все плагины загружены (в том числе после /reload)
+        plugin.getCommandManager().rescanCommandMap();
+    }
+}
@@ -0,0 +1,26 @@
+package com.neohide.neohide.listeners;
+
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import com.neohide.neohide.NeoHide;
+
+public class HideListener implements Listener {
+
+    private final NeoHide plugin;
+
+    public HideListener(NeoHide plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        plugin.getHideManager().onPlayerJoin(event.getPlayer());
+    }
+
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        plugin.getHideManager().onPlayerQuit(event.getPlayer());
+    }
+}
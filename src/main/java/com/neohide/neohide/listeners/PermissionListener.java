@@ -1,13 +1,43 @@
 package com.neohide.neohide.listeners;
 
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerCommandPreprocessEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.server.ServerCommandEvent;
 import com.neohide.neohide.NeoHide;
+import com.neohide.neohide.util.CommandLabel;
+
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.logging.Level;
 
 public class PermissionListener implements Listener {
 
+    // Команды, после которых права игроков обычно пересчитываются
+    private static final Set<String> PERMISSION_COMMANDS = new HashSet<>(Arrays.asList(
+            "op", "deop", "lp", "luckperms", "perm", "perms", "permission", "permissions",
+            "pex", "permissionsex", "manuadd", "manudel", "manuaddp", "manudelp", "lpb", "lpv",
+            "mangadd", "mangdel", "mangaddp", "mangdelp", "mangaddi", "mangdeli"
+    ));
+
+    // Изменения групп и наследования затрагивают всех участников группы, а их не видно из команды
+    private static final Set<String> GROUP_COMMANDS = new HashSet<>(Arrays.asList(
+            "mangadd", "mangdel", "mangaddp", "mangdelp", "mangaddi", "mangdeli"
+    ));
+    private static final Set<String> GROUP_ARGUMENTS = new HashSet<>(Arrays.asList(
+            "group", "groups", "inherit", "inheritance"
+    ));
+
+    // Плагины прав применяют изменения не сразу, поэтому игрок проверяется ещё раз позже
+    private static final long RECHECK_DELAY_TICKS = 20L;
+
     private final NeoHide plugin;
 
     public PermissionListener(NeoHide plugin) {
@@ -23,4 +53,125 @@ public class PermissionListener implements Listener {
     public void onPlayerQuit(PlayerQuitEvent event) {
         plugin.getPermissionProtection().onPlayerQuit(event.getPlayer());
     }
-}
\ No newline at end of file
+
+    @EventHandler
+    public void onWorldChange(PlayerChangedWorldEvent event) {
+        // Права могут зависеть от мира
+        plugin.getPermissionProtection().markDirty(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerCommand(PlayerCommandPreprocessEvent event) {
+        onCommand(event.getMessage());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onServerCommand(ServerCommandEvent event) {
+        onCommand(event.getCommand());
+    }
+
+    /**
+     * Подписаться на пересчёт прав в LuckPerms, если он установлен. Зависимости
+     * на LuckPerms нет, поэтому API вызывается через отражение.
+     */
+    public void hookLuckPerms() {
+        if (plugin.getServer().getPluginManager().getPlugin("LuckPerms") == null) {
+            return;
+        }
+
+        try {
+            Class<?> luckPermsClass = Class.forName("net.luckperms.api.LuckPerms");
+            Class<?> eventBusClass = Class.forName("net.luckperms.api.event.EventBus");
+            Class<?> eventClass = Class.forName("net.luckperms.api.event.user.UserDataRecalculateEvent");
+            Class<?> userClass = Class.forName("net.luckperms.api.model.user.User");
+            Method getUser = eventClass.getMethod("getUser");
+            Method getUniqueId = userClass.getMethod("getUniqueId");
+
+            Object api = Class.forName("net.luckperms.api.LuckPermsProvider").getMethod("get").invoke(null);
+            Object eventBus = luckPermsClass.getMethod("getEventBus").invoke(api);
+
+            // Событие приходит из потока LuckPerms, проверка — в основном потоке
+            Consumer<Object> handler = event -> {
+                try {
+                    UUID uuid = (UUID) getUniqueId.invoke(getUser.invoke(event));
+                    plugin.getServer().getScheduler().runTask(plugin, () -> {
+                        Player player = plugin.getServer().getPlayer(uuid);
+                        if (player != null) {
+                            plugin.getPermissionProtection().markDirty(player);
+                        }
+                    });
+                } catch (ReflectiveOperationException e) {
+                    plugin.getLogger().log(Level.FINE, "Не удалось разобрать событие LuckPerms", e);
+                }
+            };
+
+            eventBusClass.getMethod("subscribe", Object.class, Class.class, Consumer.class)
+                    .invoke(eventBus, plugin, eventClass, handler);
+            plugin.getLogger().info("Подписка на пересчёт прав LuckPerms включена");
+        } catch (ReflectiveOperationException | LinkageError e) {
+            plugin.getLogger().warning("Не удалось подписаться на события LuckPerms: " + e);
+        }
+    }
+
+    /**
+     * После команды прав проверить упомянутых в ней игроков,
+     * а после изменения групп — всех игроков онлайн
+     */
+    private void onCommand(String commandLine) {
+        // Метка сверяется без выделения памяти: сюда приходит каждая команда сервера
+        CommandLabel parsed = CommandLabel.parse(commandLine);
+        int labelStart = parsed.labelStart();
+        int labelEnd = parsed.end();
+        String label = findCommand(PERMISSION_COMMANDS, commandLine, labelStart, labelEnd);
+        if (label == null) {
+            return;
+        }
+
+        // Аргументы разбираем только у команд прав
+        String[] args = commandLine.substring(labelEnd).trim().split("\\s+");
+        boolean groupChange = GROUP_COMMANDS.contains(label);
+        for (int i = 0; i < args.length && !groupChange; i++) {
+            groupChange = GROUP_ARGUMENTS.contains(args[i].toLowerCase());
+        }
+        if (groupChange) {
+            markDirty(new ArrayList<>(Bukkit.getOnlinePlayers()));
+            return;
+        }
+
+        List<Player> targets = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            Player target = Bukkit.getPlayerExact(args[i]);
+            if (target != null) {
+                targets.add(target);
+            }
+        }
+        markDirty(targets);
+    }
+
+    // Команда из набора, совпадающая с message[start, end) без учёта регистра, или null
+    private static String findCommand(Set<String> commands, String message, int start, int end) {
+        int length = end - start;
+        for (String command : commands) {
+            if (command.length() == length && message.regionMatches(true, start, command, 0, length)) {
+                return command;
+            }
+        }
+        return null;
+    }
+
+    private void markDirty(List<Player> players) {
+        if (players.isEmpty()) {
+            return;
+        }
+        for (Player player : players) {
+            plugin.getPermissionProtection().markDirty(player);
+        }
+        plugin.getServer().getScheduler().runTaskLater(plugin, () -> {
+            for (Player player : players) {
+                if (player.isOnline()) {
+                    plugin.getPermissionProtection().markDirty(player);
+                }
+            }
+        }, RECHECK_DELAY_TICKS);
+    }
+}
@@ -4,6 +4,7 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.server.TabCompleteEvent;
 import com.neohide.neohide.NeoHide;
+import com.neohide.neohide.util.CommandLabel;
 import java.util.*;
 
 public class TabCompleteListener implements Listener {
@@ -20,16 +21,17 @@ public class TabCompleteListener implements Listener {
             return;
         }
 
-        String buffer = event.getBuffer().toLowerCase();
+        String buffer = event.getBuffer();
         if (!buffer.startsWith("/")) {
             return;
         }
 
+        // Метки с пространством имён ("/minecraft:op") проверяются так же, как при выполнении команды
         List<String> completions = event.getCompletions();
-        List<String> filtered = new ArrayList<>();
+        List<String> filtered = new ArrayList<>(completions.size());
 
         for (String completion : completions) {
-            String cmd = completion.toLowerCase().replace("/", "").split(" ")[0];
+            CommandLabel cmd = CommandLabel.parse(completion);
 
             if (!plugin.getConfigManager().isCommandHidden(cmd)) {
                 filtered.add(completion);
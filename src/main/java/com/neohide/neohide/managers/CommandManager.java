@@ -1,30 +1,58 @@
 package com.neohide.neohide.managers;
 
 import com.neohide.neohide.NeoHide;
+import com.neohide.neohide.util.CommandTrie;
+import com.neohide.neohide.util.ListSnapshot;
 import org.bukkit.Bukkit;
 import org.bukkit.command.*;
+import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.java.JavaPlugin;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.lang.reflect.Field;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 public class CommandManager {
 
     private final JavaPlugin plugin;
     private final ConfigManager configManager;
-    private Map<String, Command> originalCommands;
     private Map<String, String> fakeCommandMap;
 
+    // Карта команд сервера: дескрипторы и экземпляр получаются один раз
+    private MethodHandle commandMapGetter;
+    private VarHandle knownCommandsHandle;
+    private SimpleCommandMap commandMap;
+
+    // Команды, которые мы убрали из карты, и снимок списков, который к ней применён
+    private final Map<String, Command> removedCommands = new HashMap<>();
+    private ListSnapshot appliedLists;
+
+    // Карта и её размер на момент последней проверки: изменение означает, что команды
+    // зарегистрировали или убрали в обход нас (плагин включился позже, PlugMan и т.п.)
+    private Map<String, Command> watchedMap;
+    private int watchedSize = -1;
+
+    // Отсортированные метки всех команд (видимых и убранных) для поиска затронутых изменением
+    private NavigableSet<String> labelIndex = new TreeSet<>();
+    private long labelIndexModCount = -1;
+
+    // Растёт, когда мог измениться сам набор меток: полный проход, пересканирование
+    // после чужих изменений, забытые и возвращённые команды. Синхронизация скрытых
+    // команд только переносит метки между картами и счётчик не трогает
+    private long commandMapModCount;
+
+    // Одна синхронизация карты команд на пачку изменений из веб-API, сколько бы команд в ней ни было
+    private final Runnable reapplyHiddenCommands = this::syncHiddenCommands;
+
     public CommandManager(JavaPlugin plugin) {
         this.plugin = plugin;
         this.configManager = ((NeoHide) plugin).getConfigManager();
-        this.originalCommands = new HashMap<>();
         this.fakeCommandMap = new HashMap<>();
     }
 
     public void setupCommands() {
-        // Сохраняем оригинальные команды
-        saveOriginalCommands();
-
         // Скрываем команды
         hideCommands();
 
@@ -32,60 +60,180 @@ public class CommandManager {
         setupFakeAliases();
     }
 
-    private void saveOriginalCommands() {
-        try {
-            Field commandMapField = Bukkit.getServer().getClass().getDeclaredField("commandMap");
-            commandMapField.setAccessible(true);
-            SimpleCommandMap commandMap = (SimpleCommandMap) commandMapField.get(Bukkit.getServer());
-
-            Field knownCommandsField = SimpleCommandMap.class.getDeclaredField("knownCommands");
-            knownCommandsField.setAccessible(true);
+    /**
+     * Полный проход по карте команд: убрать все команды, попадающие под список скрытых
+     */
+    public void hideCommands() {
+        Map<String, Command> knownCommands = getKnownCommands();
+        if (knownCommands == null) {
+            return;
+        }
 
-            @SuppressWarnings("unchecked")
-            Map<String, Command> knownCommands = (Map<String, Command>) knownCommandsField.get(commandMap);
+        ListSnapshot lists = configManager.getLists();
+        CommandTrie trie = lists.getHiddenCommandTrie();
 
-            // Сохраняем копию оригинальных команд
-            for (Map.Entry<String, Command> entry : knownCommands.entrySet()) {
-                originalCommands.put(entry.getKey().toLowerCase(), entry.getValue());
+        // Скрываем команды
+        List<String> toRemove = new ArrayList<>();
+        for (String command : knownCommands.keySet()) {
+            if (trie.matches(command)) {
+                toRemove.add(command);
             }
+        }
 
-        } catch (Exception e) {
-            plugin.getLogger().warning("Не удалось сохранить оригинальные команды: " + e.getMessage());
+        for (String command : toRemove) {
+            removedCommands.put(command, knownCommands.remove(command));
         }
+        appliedLists = lists;
+        remember(knownCommands);
+        commandMapModCount++;
+
+        plugin.getLogger().info("Скрыто " + toRemove.size() + " команд");
     }
 
-    public void hideCommands() {
-        try {
-            Field commandMapField = Bukkit.getServer().getClass().getDeclaredField("commandMap");
-            commandMapField.setAccessible(true);
-            SimpleCommandMap commandMap = (SimpleCommandMap) commandMapField.get(Bukkit.getServer());
+    /**
+     * Применить к карте команд только разницу между применённым и текущим списком скрытых команд:
+     * убрать метки, которые теперь скрыты, и вернуть те, что скрываться перестали
+     */
+    public void syncHiddenCommands() {
+        Map<String, Command> knownCommands = getKnownCommands();
+        if (knownCommands == null) {
+            return;
+        }
 
-            Field knownCommandsField = SimpleCommandMap.class.getDeclaredField("knownCommands");
-            knownCommandsField.setAccessible(true);
+        ListSnapshot target = configManager.getLists();
+        ListSnapshot applied = appliedLists;
+        if (applied == null) {
+            hideCommands();
+            return;
+        }
+        if (applied.getVersion() == target.getVersion()) {
+            return;
+        }
 
-            @SuppressWarnings("unchecked")
-            Map<String, Command> knownCommands = (Map<String, Command>) knownCommandsField.get(commandMap);
+        // Записи, которые добавились или пропали
+        Set<String> changed = new HashSet<>(target.getHiddenCommands());
+        changed.addAll(applied.getHiddenCommands());
+        Set<String> unchanged = new HashSet<>(target.getHiddenCommands());
+        unchanged.retainAll(applied.getHiddenCommands());
+        changed.removeAll(unchanged);
 
-            // Скрываем команды
-            List<String> toRemove = new ArrayList<>();
-            for (String command : knownCommands.keySet()) {
-                if (configManager.isCommandHidden(command)) {
-                    toRemove.add(command);
+        CommandTrie trie = target.getHiddenCommandTrie();
+        for (String label : affectedLabels(knownCommands, changed)) {
+            if (trie.matches(label)) {
+                Command command = knownCommands.remove(label);
+                if (command != null) {
+                    removedCommands.put(label, command);
+                }
+            } else {
+                Command command = removedCommands.remove(label);
+                if (command != null) {
+                    knownCommands.putIfAbsent(label, command);
                 }
             }
+        }
+        appliedLists = target;
+        remember(knownCommands);
+    }
+
+    /**
+     * Дешёвая проверка карты команд (раз в несколько тиков): полный проход
+     * выполняется, только если сменилась сама карта или число команд в ней
+     */
+    public void checkCommandMap() {
+        Map<String, Command> knownCommands = getKnownCommands();
+        if (knownCommands == null || appliedLists == null) {
+            return;
+        }
+        if (knownCommands == watchedMap && knownCommands.size() == watchedSize) {
+            return;
+        }
+        hideLateCommands(knownCommands);
+    }
+
+    /**
+     * Проверить карту команд без сравнения размера: плагин мог перерегистрировать
+     * столько же команд, сколько убрал (вызывается при включении плагина)
+     */
+    public void rescanCommandMap() {
+        commandMapModCount++;
+        Map<String, Command> knownCommands = getKnownCommands();
+        if (knownCommands != null && appliedLists != null) {
+            hideLateCommands(knownCommands);
+        }
+    }
 
-            for (String command : toRemove) {
-                knownCommands.remove(command);
+    /**
+     * Забыть убранные нами команды выключенного плагина, чтобы restoreCommands
+     * не вернул в карту команды, которых больше нет
+     */
+    public void forgetCommands(Plugin owner) {
+        removedCommands.values().removeIf(command ->
+                command instanceof PluginCommand && ((PluginCommand) command).getPlugin() == owner);
+        commandMapModCount++;
+    }
+
+    // Всё, что раньше попадало под список, уже убрано, поэтому совпадения — это новые команды
+    private void hideLateCommands(Map<String, Command> knownCommands) {
+        CommandTrie trie = appliedLists.getHiddenCommandTrie();
+        List<String> toRemove = new ArrayList<>();
+        for (String label : knownCommands.keySet()) {
+            if (trie.matches(label)) {
+                toRemove.add(label);
             }
+        }
+
+        // Перерегистрированная команда заменяет сохранённую: её и вернёт restoreCommands
+        for (String label : toRemove) {
+            removedCommands.put(label, knownCommands.remove(label));
+        }
+        // Набор меток сменился, индекс пересоберётся при следующей синхронизации
+        remember(knownCommands);
+        commandMapModCount++;
+
+        if (!toRemove.isEmpty()) {
+            plugin.getLogger().info("Скрыто " + toRemove.size() + " команд, зарегистрированных позже");
+        }
+    }
+
+    private void remember(Map<String, Command> knownCommands) {
+        watchedMap = knownCommands;
+        watchedSize = knownCommands.size();
+    }
 
-            plugin.getLogger().info("Скрыто " + toRemove.size() + " команд");
+    /**
+     * Метки, на которые может повлиять изменение записей: метки, начинающиеся с записи,
+     * и метки, которые сами являются префиксом записи (та же семантика, что у CommandTrie)
+     */
+    private Set<String> affectedLabels(Map<String, Command> knownCommands, Set<String> entries) {
+        NavigableSet<String> labels = getLabelIndex(knownCommands);
+        Set<String> affected = new HashSet<>();
+        for (String entry : entries) {
+            String lower = entry.toLowerCase();
+            affected.addAll(labels.subSet(lower, true, lower + Character.MAX_VALUE, false));
+            for (int i = 1; i < lower.length(); i++) {
+                String prefix = lower.substring(0, i);
+                if (labels.contains(prefix)) {
+                    affected.add(prefix);
+                }
+            }
+        }
+        return affected;
+    }
 
-        } catch (Exception e) {
-            plugin.getLogger().warning("Не удалось скрыть команды: " + e.getMessage());
+    // Индекс пересобирается, только если набор меток мог измениться: размер не годится,
+    // плагин мог заменить одну команду другой
+    private NavigableSet<String> getLabelIndex(Map<String, Command> knownCommands) {
+        if (labelIndexModCount != commandMapModCount) {
+            NavigableSet<String> labels = new TreeSet<>(knownCommands.keySet());
+            labels.addAll(removedCommands.keySet());
+            labelIndex = labels;
+            labelIndexModCount = commandMapModCount;
         }
+        return labelIndex;
     }
 
     private void setupFakeAliases() {
+        fakeCommandMap.clear();
         Map<String, String> aliases = configManager.getFakeAliases();
         for (Map.Entry<String, String> entry : aliases.entrySet()) {
             fakeCommandMap.put(entry.getKey().toLowerCase(), entry.getValue());
@@ -100,25 +248,44 @@ public class CommandManager {
         return fakeCommandMap.containsKey(command.toLowerCase());
     }
 
+    /**
+     * Вернуть в карту все команды, которые мы убрали
+     */
     public void restoreCommands() {
-        try {
-            Field commandMapField = Bukkit.getServer().getClass().getDeclaredField("commandMap");
-            commandMapField.setAccessible(true);
-            SimpleCommandMap commandMap = (SimpleCommandMap) commandMapField.get(Bukkit.getServer());
-
-            Field knownCommandsField = SimpleCommandMap.class.getDeclaredField("knownCommands");
-            knownCommandsField.setAccessible(true);
+        Map<String, Command> knownCommands = getKnownCommands();
+        if (knownCommands == null) {
+            return;
+        }
 
-            @SuppressWarnings("unchecked")
-            Map<String, Command> knownCommands = (Map<String, Command>) knownCommandsField.get(commandMap);
+        for (Map.Entry<String, Command> entry : removedCommands.entrySet()) {
+            knownCommands.putIfAbsent(entry.getKey(), entry.getValue());
+        }
+        removedCommands.clear();
+        appliedLists = null;
+        watchedMap = null;
+        commandMapModCount++;
+    }
 
-            // Восстанавливаем оригинальные команды
-            for (Map.Entry<String, Command> entry : originalCommands.entrySet()) {
-                knownCommands.put(entry.getKey(), entry.getValue());
+    @SuppressWarnings("unchecked")
+    private Map<String, Command> getKnownCommands() {
+        try {
+            if (commandMap == null) {
+                if (commandMapGetter == null) {
+                    Field commandMapField = Bukkit.getServer().getClass().getDeclaredField("commandMap");
+                    commandMapField.setAccessible(true);
+                    commandMapGetter = MethodHandles.lookup().unreflectGetter(commandMapField);
+                }
+                if (knownCommandsHandle == null) {
+                    knownCommandsHandle = MethodHandles.privateLookupIn(SimpleCommandMap.class, MethodHandles.lookup())
+                            .findVarHandle(SimpleCommandMap.class, "knownCommands", Map.class);
+                }
+                commandMap = (SimpleCommandMap) commandMapGetter.invoke(Bukkit.getServer());
             }
-
-        } catch (Exception e) {
-            plugin.getLogger().warning("Не удалось восстановить команды: " + e.getMessage());
+            // Читаем поле каждый раз: некоторые ядра подменяют саму карту
+            return (Map<String, Command>) knownCommandsHandle.get(commandMap);
+        } catch (Throwable e) {
+            plugin.getLogger().warning("Не удалось получить карту команд: " + e.getMessage());
+            return null;
         }
     }
 
@@ -128,12 +295,31 @@ public class CommandManager {
 
     public void addHiddenCommand(String command) {
         configManager.addHiddenCommand(command);
-        hideCommands(); // Применяем изменения
+        syncHiddenCommands(); // Применяем изменения
     }
 
     public void removeHiddenCommand(String command) {
         configManager.removeHiddenCommand(command);
-        restoreCommands();
-        hideCommands();
+        syncHiddenCommands();
+    }
+
+    /**
+     * Скрыть команду из другого потока (веб-API). Изменение применяется в основном потоке.
+     *
+     * @return true, если команды ещё не было в списке
+     */
+    public CompletableFuture<Boolean> addHiddenCommandAsync(String command) {
+        return ((NeoHide) plugin).getMutationQueue()
+                .submit(() -> configManager.addHiddenCommand(command), reapplyHiddenCommands);
+    }
+
+    /**
+     * Показать команду из другого потока (веб-API)
+     *
+     * @return true, если команда была скрыта
+     */
+    public CompletableFuture<Boolean> removeHiddenCommandAsync(String command) {
+        return ((NeoHide) plugin).getMutationQueue()
+                .submit(() -> configManager.removeHiddenCommand(command), reapplyHiddenCommands);
     }
 }
\ No newline at end of file
@@ -1,10 +1,16 @@
 package com.neohide.neohide.managers;
 
+import com.neohide.neohide.NeoHide;
+import com.neohide.neohide.util.CommandLabel;
+import com.neohide.neohide.util.CommandTrie;
+import com.neohide.neohide.util.CommandVerdictCache;
+import com.neohide.neohide.util.ListSnapshot;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.plugin.java.JavaPlugin;
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 public class ConfigManager {
 
@@ -14,14 +20,19 @@ public class ConfigManager {
     private File dataFile;
 
     // Основные настройки
-    private boolean hideCommandsEnabled = true;
+    private volatile boolean hideCommandsEnabled = true;
     private boolean hideFromTabComplete = true;
     private boolean hideOpCommands = true;
     private boolean permissionProtectionEnabled = true;
     private boolean opProtectionEnabled = true;
     private boolean autoProtectionEnabled = true;
+    private int permissionCheckPlayersPerTick = 5;
+    private int sweepBudgetMicros = 2000;
     private boolean logToConsole = true;
     private boolean logToFile = true;
+    private int verdictCacheSize = 1024;
+    private int verdictCacheTtlSeconds = 300;
+    private int commandWatchIntervalTicks = 20;
 
     // Настройки базы данных
     private String databaseType = "SQLITE";
@@ -35,10 +46,18 @@ public class ConfigManager {
     private boolean webEnabled = false;
     private int webPort = 8080;
     private String webAuthToken = "neohide-secret-token-change-me";
+    private String webExecutorMode = "POOL";
+    private int webExecutorThreads = 4;
+    private int webExecutorQueueSize = 64;
+    private int webEventsMaxSubscribers = 16;
+    private int webEventsBufferSize = 256;
 
-    private List<String> hiddenCommands = new ArrayList<>();
-    private List<String> protectedPermissions = new ArrayList<>();
-    private Map<String, String> fakeAliases = new HashMap<>();
+    // Списки и дерево скрытых команд. Читаются без блокировок из любого потока,
+    // изменения публикуют новый снимок (версия снимка сбрасывает кэш вердиктов)
+    private volatile ListSnapshot lists = ListSnapshot.empty();
+
+    private volatile CommandVerdictCache verdictCache =
+            new CommandVerdictCache(verdictCacheSize, verdictCacheTtlSeconds, TimeUnit.SECONDS);
 
     public ConfigManager(JavaPlugin plugin) {
         this.plugin = plugin;
@@ -63,8 +82,14 @@ public class ConfigManager {
         permissionProtectionEnabled = config.getBoolean("permission-protection.enabled", true);
         opProtectionEnabled = config.getBoolean("permission-protection.protect-op", true);
         autoProtectionEnabled = config.getBoolean("permission-protection.auto-fix", true);
+        permissionCheckPlayersPerTick = Math.max(0, config.getInt("permission-protection.players-per-tick", 5));
+        sweepBudgetMicros = Math.max(1, config.getInt("scheduler.budget-micros", 2000));
         logToConsole = config.getBoolean("logging.console", true);
         logToFile = config.getBoolean("logging.file", true);
+        verdictCacheSize = config.getInt("hide-commands.verdict-cache.size", 1024);
+        verdictCacheTtlSeconds = config.getInt("hide-commands.verdict-cache.ttl-seconds", 300);
+        verdictCache = new CommandVerdictCache(verdictCacheSize, verdictCacheTtlSeconds, TimeUnit.SECONDS);
+        commandWatchIntervalTicks = Math.max(0, config.getInt("hide-commands.watch-interval-ticks", 20));
 
         // Загрузка настроек БД
         databaseType = config.getString("database.type", "SQLITE");
@@ -78,12 +103,18 @@ public class ConfigManager {
         webEnabled = config.getBoolean("web.enabled", false);
         webPort = config.getInt("web.port", 8080);
         webAuthToken = config.getString("web.auth-token", "neohide-secret-token-change-me");
+        webExecutorMode = config.getString("web.executor.mode", "POOL").toUpperCase();
+        webExecutorThreads = Math.max(1, config.getInt("web.executor.threads", 4));
+        webExecutorQueueSize = Math.max(0, config.getInt("web.executor.queue-size", 64));
+        webEventsMaxSubscribers = Math.max(0, config.getInt("web.events.max-subscribers", 16));
+        webEventsBufferSize = Math.max(1, config.getInt("web.events.buffer-size", 256));
 
         // Списки
-        hiddenCommands = config.getStringList("hidden-commands");
-        protectedPermissions = config.getStringList("protected-permissions");
+        List<String> hiddenCommands = new ArrayList<>(config.getStringList("hidden-commands"));
+        List<String> protectedPermissions = config.getStringList("protected-permissions");
 
         // Псевдонимы команд
+        Map<String, String> fakeAliases = new LinkedHashMap<>();
         if (config.contains("fake-aliases")) {
             for (String key : config.getConfigurationSection("fake-aliases").getKeys(false)) {
                 fakeAliases.put(key, config.getString("fake-aliases." + key));
@@ -91,10 +122,14 @@ public class ConfigManager {
         }
 
         // Загрузка из data.yml
-        loadHiddenData();
+        loadHiddenData(hiddenCommands);
+
+        synchronized (this) {
+            lists = ListSnapshot.of(lists.getVersion() + 1, hiddenCommands, protectedPermissions, fakeAliases);
+        }
     }
 
-    private void loadHiddenData() {
+    private void loadHiddenData(List<String> hiddenCommands) {
         if (dataConfig.contains("manually-hidden")) {
             List<String> manual = dataConfig.getStringList("manually-hidden");
             hiddenCommands.addAll(manual);
@@ -102,7 +137,7 @@ public class ConfigManager {
     }
 
     public void saveHiddenData() {
-        dataConfig.set("manually-hidden", new ArrayList<>(new HashSet<>(hiddenCommands)));
+        dataConfig.set("manually-hidden", new ArrayList<>(new HashSet<>(lists.getHiddenCommands())));
         try {
             dataConfig.save(dataFile);
         } catch (Exception e) {
@@ -114,6 +149,7 @@ public class ConfigManager {
         plugin.reloadConfig();
         config = plugin.getConfig();
         loadConfig();
+        publishConfigChange("*", null);
     }
 
     // ========== ГЕТТЕРЫ ==========
@@ -125,8 +161,11 @@ public class ConfigManager {
     public boolean isPermissionProtectionEnabled() { return permissionProtectionEnabled; }
     public boolean isOpProtectionEnabled() { return opProtectionEnabled; }
     public boolean isAutoProtectionEnabled() { return autoProtectionEnabled; }
+    public int getPermissionCheckPlayersPerTick() { return permissionCheckPlayersPerTick; }
+    public int getSweepBudgetMicros() { return sweepBudgetMicros; }
     public boolean isLogToConsole() { return logToConsole; }
     public boolean isLogToFile() { return logToFile; }
+    public int getCommandWatchIntervalTicks() { return commandWatchIntervalTicks; }
 
     // Настройки БД
     public String getDatabaseType() { return databaseType; }
@@ -140,152 +179,224 @@ public class ConfigManager {
     public boolean isWebEnabled() { return webEnabled; }
     public int getWebPort() { return webPort; }
     public String getWebAuthToken() { return webAuthToken; }
+    public String getWebExecutorMode() { return webExecutorMode; }
+    public int getWebExecutorThreads() { return webExecutorThreads; }
+    public int getWebExecutorQueueSize() { return webExecutorQueueSize; }
+    public int getWebEventsMaxSubscribers() { return webEventsMaxSubscribers; }
+    public int getWebEventsBufferSize() { return webEventsBufferSize; }
 
     // Списки
-    public List<String> getHiddenCommands() { return new ArrayList<>(hiddenCommands); }
-    public List<String> getProtectedPermissions() { return new ArrayList<>(protectedPermissions); }
-    public Map<String, String> getFakeAliases() { return new HashMap<>(fakeAliases); }
+    // Списки неизменяемы: это представления текущего снимка
+    public List<String> getHiddenCommands() { return lists.getHiddenCommands(); }
+    public List<String> getProtectedPermissions() { return lists.getProtectedPermissions(); }
+    public Map<String, String> getFakeAliases() { return lists.getFakeAliases(); }
+    public ListSnapshot getLists() { return lists; }
 
     // ========== СЕТТЕРЫ ==========
 
     // Основные настройки
     public void setHideCommandsEnabled(boolean value) {
         hideCommandsEnabled = value;
-        config.set("hide-commands.enabled", value);
-        plugin.saveConfig();
+        setAndSave("hide-commands.enabled", value);
     }
 
     public void setHideFromTabComplete(boolean value) {
         hideFromTabComplete = value;
-        config.set("hide-commands.hide-from-tab", value);
-        plugin.saveConfig();
+        setAndSave("hide-commands.hide-from-tab", value);
     }
 
     public void setHideOpCommands(boolean value) {
         hideOpCommands = value;
-        config.set("hide-commands.hide-op-commands", value);
-        plugin.saveConfig();
+        setAndSave("hide-commands.hide-op-commands", value);
     }
 
     public void setPermissionProtectionEnabled(boolean value) {
         permissionProtectionEnabled = value;
-        config.set("permission-protection.enabled", value);
-        plugin.saveConfig();
+        setAndSave("permission-protection.enabled", value);
     }
 
     public void setOpProtectionEnabled(boolean value) {
         opProtectionEnabled = value;
-        config.set("permission-protection.protect-op", value);
-        plugin.saveConfig();
+        setAndSave("permission-protection.protect-op", value);
     }
 
     public void setAutoProtectionEnabled(boolean value) {
         autoProtectionEnabled = value;
-        config.set("permission-protection.auto-fix", value);
-        plugin.saveConfig();
+        setAndSave("permission-protection.auto-fix", value);
     }
 
     public void setLogToConsole(boolean value) {
         logToConsole = value;
-        config.set("logging.console", value);
-        plugin.saveConfig();
+        setAndSave("logging.console", value);
     }
 
     public void setLogToFile(boolean value) {
         logToFile = value;
-        config.set("logging.file", value);
-        plugin.saveConfig();
+        setAndSave("logging.file", value);
     }
 
     // Настройки веб-сервера
     public void setWebEnabled(boolean value) {
         webEnabled = value;
-        config.set("web.enabled", value);
-        plugin.saveConfig();
+        setAndSave("web.enabled", value);
     }
 
     public void setWebPort(int value) {
         webPort = value;
-        config.set("web.port", value);
-        plugin.saveConfig();
+        setAndSave("web.port", value);
     }
 
     public void setWebAuthToken(String value) {
         webAuthToken = value;
         config.set("web.auth-token", value);
         plugin.saveConfig();
+        // Сам токен в ленту не попадает
+        publishConfigChange("web.auth-token", null);
     }
 
-    // Управление скрытыми командами
-    public void addHiddenCommand(String command) {
-        if (!hiddenCommands.contains(command.toLowerCase())) {
-            hiddenCommands.add(command.toLowerCase());
-            saveHiddenData();
+    // Управление скрытыми командами (только из основного потока, см. MutationQueue)
+    /**
+     * @return true, если команды ещё не было в списке
+     */
+    public boolean addHiddenCommand(String command) {
+        String lower = command.toLowerCase();
+        synchronized (this) {
+            ListSnapshot current = lists;
+            if (current.getHiddenCommands().contains(lower)) {
+                return false;
+            }
+            List<String> updated = new ArrayList<>(current.getHiddenCommands());
+            updated.add(lower);
+            lists = current.withHiddenCommands(updated);
         }
+        saveHiddenData();
+        publishListChange("hidden_commands", "add", lower);
+        return true;
     }
 
-    public void removeHiddenCommand(String command) {
-        hiddenCommands.remove(command.toLowerCase());
+    /**
+     * @return true, если команда была в списке
+     */
+    public boolean removeHiddenCommand(String command) {
+        String lower = command.toLowerCase();
+        synchronized (this) {
+            ListSnapshot current = lists;
+            List<String> updated = new ArrayList<>(current.getHiddenCommands());
+            if (!updated.remove(lower)) {
+                return false;
+            }
+            lists = current.withHiddenCommands(updated);
+        }
         saveHiddenData();
+        publishListChange("hidden_commands", "remove", lower);
+        return true;
     }
 
     // Управление защищенными правами
     public void addProtectedPermission(String permission) {
-        if (!protectedPermissions.contains(permission.toLowerCase())) {
-            protectedPermissions.add(permission.toLowerCase());
-            saveConfig();
+        String lower = permission.toLowerCase();
+        synchronized (this) {
+            ListSnapshot current = lists;
+            if (current.getProtectedPermissions().contains(lower)) {
+                return;
+            }
+            List<String> updated = new ArrayList<>(current.getProtectedPermissions());
+            updated.add(lower);
+            lists = current.withProtectedPermissions(updated);
         }
+        saveConfig();
+        publishListChange("protected_permissions", "add", lower);
     }
 
     public void removeProtectedPermission(String permission) {
-        protectedPermissions.remove(permission.toLowerCase());
+        String lower = permission.toLowerCase();
+        synchronized (this) {
+            ListSnapshot current = lists;
+            List<String> updated = new ArrayList<>(current.getProtectedPermissions());
+            if (!updated.remove(lower)) {
+                return;
+            }
+            lists = current.withProtectedPermissions(updated);
+        }
         saveConfig();
+        publishListChange("protected_permissions", "remove", lower);
     }
 
     // ========== ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ==========
 
-    public boolean isCommandHidden(String command) {
-        String cmd = command.toLowerCase().replace("/", "");
+    /**
+     * Записать значение в config.yml и сообщить веб-панели
+     */
+    private void setAndSave(String key, Object value) {
+        config.set(key, value);
+        plugin.saveConfig();
+        publishConfigChange(key, value);
+    }
 
-        // Проверка точного совпадения
-        if (hiddenCommands.contains(cmd)) {
-            return true;
+    private void publishConfigChange(String key, Object value) {
+        LiveEventBus eventBus = ((NeoHide) plugin).getEventBus();
+        if (eventBus != null && eventBus.hasSubscribers()) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("key", key);
+            data.put("value", value);
+            eventBus.publish("config_changed", data);
         }
+    }
 
-        // Проверка по подстроке (например, "pl" должно скрывать "plugin")
-        for (String hidden : hiddenCommands) {
-            if (cmd.startsWith(hidden) || hidden.startsWith(cmd)) {
-                return true;
-            }
+    private void publishListChange(String list, String action, String value) {
+        LiveEventBus eventBus = ((NeoHide) plugin).getEventBus();
+        if (eventBus != null && eventBus.hasSubscribers()) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("action", action);
+            data.put("value", value);
+            eventBus.publish(list, data);
         }
-
-        return false;
     }
 
-    public boolean isPermissionProtected(String permission) {
-        String perm = permission.toLowerCase();
+    public boolean isCommandHidden(CharSequence command) {
+        // Точное совпадение и совпадение по префиксу в обе стороны
+        // (например, "pl" должно скрывать "plugin") проверяются за один проход по дереву
+        return lists.getHiddenCommandTrie().matches(command);
+    }
 
-        // Проверка точного совпадения
-        if (protectedPermissions.contains(perm)) {
-            return true;
+    /**
+     * Проверка разобранной метки: "minecraft:op" скрыта, если скрыта
+     * полная метка или метка без пространства имён
+     */
+    public boolean isCommandHidden(CommandLabel label) {
+        CommandVerdictCache cache = verdictCache;
+        // Версия и дерево берутся из одного снимка
+        ListSnapshot snapshot = lists;
+        long generation = snapshot.getVersion();
+
+        int cached = cache.get(label, generation);
+        if (cached >= 0) {
+            return cached == 1;
         }
 
-        // Проверка по wildcard (например, "neohide.*" защищает "neohide.reload")
-        for (String protectedPerm : protectedPermissions) {
-            if (protectedPerm.endsWith(".*")) {
-                String prefix = protectedPerm.substring(0, protectedPerm.length() - 2);
-                if (perm.startsWith(prefix)) {
-                    return true;
-                }
-            }
-        }
+        CommandTrie trie = snapshot.getHiddenCommandTrie();
+        boolean hidden = trie.matches(label)
+                || (label.hasNamespace()
+                && label.labelStart() < label.end()
+                && trie.matches(label.message(), label.labelStart(), label.end()));
 
-        return false;
+        cache.put(label, generation, hidden);
+        return hidden;
+    }
+
+    public CommandVerdictCache getVerdictCache() {
+        return verdictCache;
+    }
+
+    public boolean isPermissionProtected(String permission) {
+        // Точное совпадение или wildcard (например, "neohide.*" защищает "neohide.reload")
+        return lists.isPermissionProtected(permission);
     }
 
     private void saveConfig() {
-        config.set("hidden-commands", hiddenCommands);
-        config.set("protected-permissions", protectedPermissions);
+        ListSnapshot snapshot = lists;
+        config.set("hidden-commands", new ArrayList<>(snapshot.getHiddenCommands()));
+        config.set("protected-permissions", new ArrayList<>(snapshot.getProtectedPermissions()));
         plugin.saveConfig();
     }
 
@@ -316,8 +427,9 @@ public class ConfigManager {
         summary.put("permission_protection_enabled", permissionProtectionEnabled);
         summary.put("op_protection_enabled", opProtectionEnabled);
         summary.put("web_enabled", webEnabled);
-        summary.put("hidden_commands_count", hiddenCommands.size());
-        summary.put("protected_permissions_count", protectedPermissions.size());
+        ListSnapshot snapshot = lists;
+        summary.put("hidden_commands_count", snapshot.getHiddenCommands().size());
+        summary.put("protected_permissions_count", snapshot.getProtectedPermissions().size());
         summary.put("database_type", databaseType);
         summary.put("web_token_changed", !webAuthToken.equals("neohide-secret-token-change-me"));
 
@@ -360,9 +472,10 @@ public class ConfigManager {
         configMap.put("web_port", webPort);
 
         // Списки
-        configMap.put("hidden_commands", new ArrayList<>(hiddenCommands));
-        configMap.put("protected_permissions", new ArrayList<>(protectedPermissions));
-        configMap.put("fake_aliases", new HashMap<>(fakeAliases));
+        ListSnapshot snapshot = lists;
+        configMap.put("hidden_commands", snapshot.getHiddenCommands());
+        configMap.put("protected_permissions", snapshot.getProtectedPermissions());
+        configMap.put("fake_aliases", snapshot.getFakeAliases());
 
         // Информация о токене (без самого токена из соображений безопасности)
         configMap.put("has_token", !webAuthToken.equals("neohide-secret-token-change-me"));
@@ -0,0 +1,307 @@
+package com.neohide.neohide.managers;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Небольшой пул соединений с БД.
+ *
+ * Соединение проверяется через isValid, если долго простаивало, закрывается
+ * по истечении max-lifetime, а занятое дольше leak-detection-threshold
+ * попадает в лог вместе со стеком места, где его взяли.
+ * У каждого соединения свой кэш PreparedStatement для постоянных SQL-строк.
+ */
+public class ConnectionPool {
+
+    /**
+     * Открывает новое физическое соединение
+     */
+    public interface ConnectionFactory {
+        Connection open() throws SQLException, ClassNotFoundException;
+    }
+
+    private final JavaPlugin plugin;
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final long connectionTimeoutMillis;
+    private final int validationTimeoutSeconds;
+    private final long idleValidationMillis;
+    private final long maxLifetimeMillis;
+    private final long leakDetectionMillis;
+
+    private final BlockingQueue<PooledConnection> idle;
+    private final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger total = new AtomicInteger();
+    private final AtomicLong borrowWaitMillis = new AtomicLong();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong leaksDetected = new AtomicLong();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    public ConnectionPool(JavaPlugin plugin, ConnectionFactory factory) {
+        this.plugin = plugin;
+        this.factory = factory;
+
+        this.maxSize = Math.max(1, plugin.getConfig().getInt("database.pool.size", 4));
+        this.connectionTimeoutMillis = Math.max(1, plugin.getConfig().getLong("database.pool.connection-timeout-ms", 5000));
+        this.validationTimeoutSeconds = Math.max(1, plugin.getConfig().getInt("database.pool.validation-timeout-seconds", 2));
+        this.idleValidationMillis = plugin.getConfig().getLong("database.pool.idle-validation-ms", 30000);
+        this.maxLifetimeMillis = plugin.getConfig().getLong("database.pool.max-lifetime-ms", 1800000);
+        this.leakDetectionMillis = plugin.getConfig().getLong("database.pool.leak-detection-threshold-ms", 10000);
+
+        this.idle = new ArrayBlockingQueue<>(maxSize);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "NeoHide-DB-Pool");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.housekeeper.scheduleWithFixedDelay(this::housekeep, 5, 5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Взять соединение из пула. Вернуть его — закрыть PooledConnection (try-with-resources).
+     */
+    public PooledConnection borrow() throws SQLException {
+        if (closed) {
+            throw new SQLException("Пул соединений закрыт");
+        }
+
+        long started = System.currentTimeMillis();
+        long deadline = started + connectionTimeoutMillis;
+
+        while (true) {
+            PooledConnection pooled = idle.poll();
+
+            if (pooled == null && total.get() < maxSize) {
+                pooled = tryCreate();
+            }
+
+            if (pooled == null) {
+                long wait = deadline - System.currentTimeMillis();
+                if (wait <= 0) {
+                    throw new SQLException("Не удалось получить соединение из пула за " + connectionTimeoutMillis + " мс");
+                }
+                try {
+                    pooled = idle.poll(wait, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Ожидание соединения прервано", e);
+                }
+                if (pooled == null) {
+                    continue;
+                }
+            }
+
+            if (!isUsable(pooled)) {
+                discard(pooled);
+                continue;
+            }
+
+            pooled.borrowedAt = System.currentTimeMillis();
+            pooled.borrowTrace = leakDetectionMillis > 0 ? new Exception("Соединение взято здесь") : null;
+            pooled.leakReported = false;
+            pooled.returned.set(false);
+            borrowed.add(pooled);
+
+            borrowCount.incrementAndGet();
+            borrowWaitMillis.addAndGet(pooled.borrowedAt - started);
+            return pooled;
+        }
+    }
+
+    private PooledConnection tryCreate() throws SQLException {
+        if (total.incrementAndGet() > maxSize) {
+            total.decrementAndGet();
+            return null;
+        }
+        try {
+            return new PooledConnection(factory.open());
+        } catch (SQLException e) {
+            total.decrementAndGet();
+            throw e;
+        } catch (Exception e) {
+            total.decrementAndGet();
+            throw new SQLException("Не удалось открыть соединение", e);
+        }
+    }
+
+    private boolean isUsable(PooledConnection pooled) {
+        long now = System.currentTimeMillis();
+        if (maxLifetimeMillis > 0 && now - pooled.createdAt > maxLifetimeMillis) {
+            return false;
+        }
+        try {
+            if (pooled.connection.isClosed()) {
+                return false;
+            }
+            if (now - pooled.lastUsed > idleValidationMillis) {
+                return pooled.connection.isValid(validationTimeoutSeconds);
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        borrowed.remove(pooled);
+        pooled.lastUsed = System.currentTimeMillis();
+        pooled.borrowTrace = null;
+
+        try {
+            // Незавершённая транзакция не должна достаться следующему
+            if (!pooled.connection.getAutoCommit()) {
+                pooled.connection.rollback();
+                pooled.connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            discard(pooled);
+            return;
+        }
+
+        if (closed || !idle.offer(pooled)) {
+            discard(pooled);
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        borrowed.remove(pooled);
+        total.decrementAndGet();
+        pooled.closePhysical();
+    }
+
+    /**
+     * Фоновая проверка: утечки и соединения с истёкшим сроком жизни
+     */
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+
+        if (leakDetectionMillis > 0) {
+            for (PooledConnection pooled : borrowed) {
+                if (!pooled.leakReported && now - pooled.borrowedAt > leakDetectionMillis) {
+                    pooled.leakReported = true;
+                    leaksDetected.incrementAndGet();
+                    plugin.getLogger().log(Level.WARNING, "Возможная утечка соединения с БД: занято "
+                            + (now - pooled.borrowedAt) + " мс", pooled.borrowTrace);
+                }
+            }
+        }
+
+        if (maxLifetimeMillis > 0) {
+            for (PooledConnection pooled : idle) {
+                if (now - pooled.createdAt > maxLifetimeMillis && idle.remove(pooled)) {
+                    discard(pooled);
+                }
+            }
+        }
+    }
+
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+
+        PooledConnection pooled;
+        while ((pooled = idle.poll()) != null) {
+            discard(pooled);
+        }
+        if (!borrowed.isEmpty()) {
+            plugin.getLogger().warning("Пул закрыт, но " + borrowed.size() + " соединений ещё заняты");
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long borrows = borrowCount.get();
+        stats.put("size", maxSize);
+        stats.put("open", total.get());
+        stats.put("idle", idle.size());
+        stats.put("in_use", borrowed.size());
+        stats.put("borrows", borrows);
+        stats.put("avg_wait_ms", borrows > 0 ? borrowWaitMillis.get() / borrows : 0);
+        stats.put("leaks_detected", leaksDetected.get());
+        return stats;
+    }
+
+    /**
+     * Соединение из пула. Используется одним потоком, пока не возвращено.
+     */
+    public final class PooledConnection implements AutoCloseable {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+        private final long createdAt = System.currentTimeMillis();
+        private volatile long lastUsed = createdAt;
+        private volatile long borrowedAt;
+        private volatile Exception borrowTrace;
+        private volatile boolean leakReported;
+        // Соединение уже возвращено: повторный close() ничего не делает
+        private final AtomicBoolean returned = new AtomicBoolean();
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * PreparedStatement из кэша соединения. Закрывать его не нужно.
+         */
+        public PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement stmt = statements.get(sql);
+            if (stmt == null || stmt.isClosed()) {
+                stmt = connection.prepareStatement(sql);
+                statements.put(sql, stmt);
+            } else {
+                stmt.clearParameters();
+            }
+            return stmt;
+        }
+
+        public Connection getConnection() {
+            return connection;
+        }
+
+        /**
+         * Отметить, что соединение всё ещё в работе (долгая выгрузка),
+         * чтобы детектор утечек не считал его забытым
+         */
+        public void touch() {
+            borrowedAt = System.currentTimeMillis();
+            leakReported = false;
+        }
+
+        /**
+         * Вернуть соединение в пул. Повторный вызов до следующего borrow() игнорируется,
+         * иначе одно соединение попало бы в пул дважды и досталось двум потокам.
+         */
+        @Override
+        public void close() {
+            if (returned.compareAndSet(false, true)) {
+                release(this);
+            }
+        }
+
+        private void closePhysical() {
+            for (PreparedStatement stmt : statements.values()) {
+                try {
+                    stmt.close();
+                } catch (SQLException ignored) {
+                }
+            }
+            statements.clear();
+            try {
+                connection.close();
+            } catch (SQLException ignored) {
+            }
+        }
+    }
+}
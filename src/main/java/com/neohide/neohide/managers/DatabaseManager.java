@@ -3,20 +3,139 @@ package com.neohide.neohide.managers;
 import org.bukkit.plugin.java.JavaPlugin;
 import com.neohide.neohide.NeoHide;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 
 public class DatabaseManager {
 
     private final JavaPlugin plugin;
-    private Connection connection;
+    private ConnectionPool pool;
     private DatabaseType dbType;
+    private DatabaseWriteQueue writeQueue;
+    private DatabaseStatistics statistics;
+
+    // Последнее сохранённое состояние игроков для пропуска неизменившихся строк
+    private final Map<UUID, PlayerState> lastSavedPlayers = new ConcurrentHashMap<>();
 
     public enum DatabaseType {
         SQLITE, MYSQL, H2
     }
 
+    /**
+     * Неизменяемое состояние игрока для сохранения в neohide_players
+     */
+    public static final class PlayerState {
+        private final UUID uuid;
+        private final String username;
+        private final boolean hidden;
+        private final boolean vanished;
+        private final boolean commandSpy;
+
+        public PlayerState(UUID uuid, String username, boolean hidden, boolean vanished, boolean commandSpy) {
+            this.uuid = uuid;
+            this.username = username;
+            this.hidden = hidden;
+            this.vanished = vanished;
+            this.commandSpy = commandSpy;
+        }
+
+        public UUID getUuid() { return uuid; }
+        public String getUsername() { return username; }
+        public boolean isHidden() { return hidden; }
+        public boolean isVanished() { return vanished; }
+        public boolean isCommandSpy() { return commandSpy; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof PlayerState)) return false;
+            PlayerState other = (PlayerState) o;
+            return hidden == other.hidden && vanished == other.vanished && commandSpy == other.commandSpy
+                    && uuid.equals(other.uuid) && Objects.equals(username, other.username);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(uuid, username, hidden, vanished, commandSpy);
+        }
+    }
+
+    /**
+     * Курсор постраничной выборки: позиция (created_at, id) последней
+     * выданной строки. В API передаётся строкой "millis-id".
+     */
+    public static final class Cursor {
+        private final long createdAt;
+        private final int id;
+
+        public Cursor(long createdAt, int id) {
+            this.createdAt = createdAt;
+            this.id = id;
+        }
+
+        /**
+         * Курсор, указывающий на строку выборки (после неё начнётся следующая страница)
+         */
+        public static Cursor of(Map<String, Object> row) {
+            Object createdAt = row.get("created_at");
+            Object id = row.get("id");
+            if (!(createdAt instanceof java.util.Date) || !(id instanceof Number)) {
+                return null;
+            }
+            return new Cursor(((java.util.Date) createdAt).getTime(), ((Number) id).intValue());
+        }
+
+        /**
+         * Разобрать курсор из строки. Некорректная строка — null.
+         */
+        public static Cursor decode(String value) {
+            if (value == null) {
+                return null;
+            }
+            int separator = value.lastIndexOf('-');
+            if (separator <= 0) {
+                return null;
+            }
+            try {
+                return new Cursor(Long.parseLong(value.substring(0, separator)),
+                        Integer.parseInt(value.substring(separator + 1)));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        public String encode() {
+            return createdAt + "-" + id;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Подставить (created_at, created_at, id) начиная с параметра index
+         */
+        int bind(PreparedStatement stmt, int index) throws SQLException {
+            Timestamp timestamp = new Timestamp(createdAt);
+            stmt.setTimestamp(index, timestamp);
+            stmt.setTimestamp(index + 1, timestamp);
+            stmt.setInt(index + 2, id);
+            return index + 3;
+        }
+
+        @Override
+        public String toString() {
+            return encode();
+        }
+    }
+
     public DatabaseManager(JavaPlugin plugin) {
         this.plugin = plugin;
     }
@@ -30,38 +149,69 @@ public class DatabaseManager {
             switch (type) {
                 case "MYSQL":
                     dbType = DatabaseType.MYSQL;
-                    connectMySQL();
                     break;
                 case "H2":
                     dbType = DatabaseType.H2;
-                    connectH2();
                     break;
                 default:
                     dbType = DatabaseType.SQLITE;
-                    connectSQLite();
             }
 
+            pool = new ConnectionPool(plugin, this::openConnection);
             createTables();
+
+            // Счётчики статистики, которые ведёт путь записи
+            statistics = new DatabaseStatistics(plugin, this);
+            statistics.start();
+
+            // Очередь отложенной записи логов и нарушений
+            writeQueue = new DatabaseWriteQueue(plugin, this);
+            writeQueue.start();
+
             plugin.getLogger().info("База данных подключена: " + dbType);
 
         } catch (Exception e) {
             plugin.getLogger().log(Level.SEVERE, "Ошибка подключения к БД", e);
+            if (pool != null) {
+                pool.close();
+                pool = null;
+            }
         }
     }
 
-    private void connectSQLite() throws SQLException {
+    /**
+     * Открыть новое соединение с настроенной БД
+     */
+    Connection openConnection() throws SQLException, ClassNotFoundException {
+        switch (dbType) {
+            case MYSQL:
+                return connectMySQL();
+            case H2:
+                return connectH2();
+            default:
+                return connectSQLite();
+        }
+    }
+
+    private Connection connectSQLite() throws SQLException {
         String path = plugin.getDataFolder().getAbsolutePath() + "/neohide.db";
         String url = "jdbc:sqlite:" + path;
 
-        connection = DriverManager.getConnection(url);
+        Connection sqliteConnection = DriverManager.getConnection(url);
 
         // Включаем поддержку внешних ключей для SQLite
-        try (Statement stmt = connection.createStatement()) {
+        try (Statement stmt = sqliteConnection.createStatement()) {
             stmt.execute("PRAGMA foreign_keys = ON");
+            // WAL позволяет читать параллельно с записью из других соединений пула
+            stmt.execute("PRAGMA journal_mode = WAL");
+            // Несколько соединений пишут в один файл — ждём блокировку вместо ошибки SQLITE_BUSY
+            stmt.execute("PRAGMA busy_timeout = 5000");
         }
+
+        return sqliteConnection;
     }
 
-    private void connectMySQL() throws SQLException, ClassNotFoundException {
+    private Connection connectMySQL() throws SQLException, ClassNotFoundException {
         Class.forName("com.mysql.cj.jdbc.Driver");
 
         String host = plugin.getConfig().getString("database.mysql.host", "localhost");
@@ -73,16 +223,16 @@ public class DatabaseManager {
         String url = String.format("jdbc:mysql://%s:%d/%s?useSSL=false&characterEncoding=utf8&serverTimezone=UTC",
                 host, port, database);
 
-        connection = DriverManager.getConnection(url, username, password);
+        return DriverManager.getConnection(url, username, password);
     }
 
-    private void connectH2() throws SQLException, ClassNotFoundException {
+    private Connection connectH2() throws SQLException, ClassNotFoundException {
         Class.forName("org.h2.Driver");
 
         String path = plugin.getDataFolder().getAbsolutePath() + "/neohide";
         String url = "jdbc:h2:" + path + ";MODE=MySQL";
 
-        connection = DriverManager.getConnection(url);
+        return DriverManager.getConnection(url);
     }
 
     private void createTables() throws SQLException {
@@ -123,9 +273,7 @@ public class DatabaseManager {
                 "  command VARCHAR(255)," +
                 "  details TEXT," +
                 "  server_name VARCHAR(64)," +
-                "  created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-                "  INDEX idx_action_type (action_type)," +
-                "  INDEX idx_created_at (created_at)" +
+                "  created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
                 ")";
 
         // Таблица скрытых команд
@@ -133,8 +281,7 @@ public class DatabaseManager {
                 "  id " + (dbType == DatabaseType.MYSQL ? "INT AUTO_INCREMENT" : "INTEGER") + " PRIMARY KEY," +
                 "  command VARCHAR(64) NOT NULL UNIQUE," +
                 "  hidden_by VARCHAR(36)," +
-                "  hidden_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-                "  INDEX idx_command (command)" +
+                "  hidden_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
                 ")";
 
         // Таблица нарушений
@@ -148,60 +295,253 @@ public class DatabaseManager {
                 "  resolved BOOLEAN DEFAULT FALSE," +
                 "  resolved_by VARCHAR(36)," +
                 "  resolved_at TIMESTAMP," +
-                "  created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-                "  INDEX idx_violation_type (violation_type)," +
-                "  INDEX idx_resolved (resolved)" +
+                "  created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP" +
                 ")";
 
-        try (Statement stmt = connection.createStatement()) {
+        try (ConnectionPool.PooledConnection conn = pool.borrow();
+             Statement stmt = conn.getConnection().createStatement()) {
             stmt.execute(playersTable);
             stmt.execute(logsTable);
             stmt.execute(hiddenCommandsTable);
             stmt.execute(violationsTable);
         }
+
+        migrateIndexes();
+        if (dbType == DatabaseType.SQLITE) {
+            migrateTimestamps();
+        }
+    }
+
+    // PRAGMA user_version, начиная с которой created_at в SQLite хранится миллисекундами
+    private static final int SQLITE_MILLIS_TIMESTAMPS = 1;
+
+    /**
+     * SQLite: привести created_at логов и нарушений к одному представлению.
+     * Раньше время ставил DEFAULT CURRENT_TIMESTAMP (текст в UTC), а очередь записи
+     * передаёт Timestamp, который драйвер хранит числом миллисекунд. В SQLite любое
+     * число меньше любого текста, поэтому смешанные строки ломают ORDER BY created_at,
+     * курсоры и фильтры выгрузки. Старые строки переводятся один раз.
+     */
+    private void migrateTimestamps() throws SQLException {
+        try (ConnectionPool.PooledConnection conn = pool.borrow();
+             Statement stmt = conn.getConnection().createStatement()) {
+            int version = 0;
+            try (ResultSet rs = stmt.executeQuery("PRAGMA user_version")) {
+                if (rs.next()) {
+                    version = rs.getInt(1);
+                }
+            }
+            if (version >= SQLITE_MILLIS_TIMESTAMPS) {
+                return;
+            }
+
+            // Повторный запуск после сбоя трогает только оставшиеся текстовые строки
+            int converted = 0;
+            for (String table : new String[]{"neohide_logs", "neohide_violations"}) {
+                converted += stmt.executeUpdate("UPDATE " + table
+                        + " SET created_at = CAST(strftime('%s', created_at) AS INTEGER) * 1000"
+                        + " WHERE typeof(created_at) = 'text' AND strftime('%s', created_at) IS NOT NULL");
+            }
+            stmt.execute("PRAGMA user_version = " + SQLITE_MILLIS_TIMESTAMPS);
+
+            if (converted > 0) {
+                plugin.getLogger().info("Время " + converted + " записей переведено в миллисекунды");
+            }
+        }
+    }
+
+    /**
+     * Вторичные индексы: имя, таблица, колонки.
+     * Индекс по (created_at, id) нужен для постраничной выборки по курсору.
+     */
+    private static final String[][] INDEXES = {
+            {"idx_logs_created_at", "neohide_logs", "created_at", "id"},
+            {"idx_logs_player_uuid", "neohide_logs", "player_uuid"},
+            {"idx_logs_action_type", "neohide_logs", "action_type"},
+            {"idx_violations_resolved", "neohide_violations", "resolved", "created_at"},
+            {"idx_violations_type", "neohide_violations", "violation_type"}
+    };
+
+    /**
+     * Создать недостающие индексы. Раньше они объявлялись внутри CREATE TABLE,
+     * что SQLite не понимает, поэтому на старых БД их может не быть вовсе.
+     * Индекс считается существующим, если какой-либо индекс таблицы начинается
+     * с тех же колонок, — так на старых MySQL-таблицах не появятся дубли.
+     */
+    private void migrateIndexes() throws SQLException {
+        try (ConnectionPool.PooledConnection conn = pool.borrow();
+             Statement stmt = conn.getConnection().createStatement()) {
+            DatabaseMetaData meta = conn.getConnection().getMetaData();
+
+            for (String[] index : INDEXES) {
+                String[] columns = Arrays.copyOfRange(index, 2, index.length);
+                if (hasIndexOn(meta, index[1], columns)) {
+                    continue;
+                }
+
+                stmt.execute("CREATE INDEX " + index[0] + " ON " + index[1]
+                        + " (" + String.join(", ", columns) + ")");
+                plugin.getLogger().info("Создан индекс " + index[0] + " на " + index[1]);
+            }
+        }
+    }
+
+    private boolean hasIndexOn(DatabaseMetaData meta, String table, String[] columns) throws SQLException {
+        String tableName = meta.storesUpperCaseIdentifiers() ? table.toUpperCase() : table;
+
+        // Имя индекса -> колонки по порядку
+        Map<String, List<String>> indexColumns = new HashMap<>();
+        try (ResultSet rs = meta.getIndexInfo(null, null, tableName, false, false)) {
+            while (rs.next()) {
+                String indexName = rs.getString("INDEX_NAME");
+                String column = rs.getString("COLUMN_NAME");
+                int position = rs.getInt("ORDINAL_POSITION");
+                if (indexName == null || column == null || position < 1) {
+                    continue;
+                }
+
+                List<String> list = indexColumns.computeIfAbsent(indexName, k -> new ArrayList<>());
+                while (list.size() < position) {
+                    list.add(null);
+                }
+                list.set(position - 1, column);
+            }
+        }
+
+        for (List<String> existing : indexColumns.values()) {
+            if (existing.size() < columns.length) {
+                continue;
+            }
+            boolean prefix = true;
+            for (int i = 0; i < columns.length; i++) {
+                if (!columns[i].equalsIgnoreCase(existing.get(i))) {
+                    prefix = false;
+                    break;
+                }
+            }
+            if (prefix) {
+                return true;
+            }
+        }
+        return false;
     }
 
     // === Player Data Methods ===
     public void savePlayerData(UUID uuid, String username, boolean isHidden,
                                boolean isVanished, boolean commandSpy) {
-        String sql;
-        if (dbType == DatabaseType.MYSQL) {
-            sql = "INSERT INTO neohide_players (uuid, username, is_hidden, is_vanished, command_spy) " +
-                    "VALUES (?, ?, ?, ?, ?) " +
-                    "ON DUPLICATE KEY UPDATE " +
-                    "username = VALUES(username), is_hidden = VALUES(is_hidden), " +
-                    "is_vanished = VALUES(is_vanished), command_spy = VALUES(command_spy), " +
-                    "last_seen = CURRENT_TIMESTAMP";
-        } else {
-            sql = "INSERT OR REPLACE INTO neohide_players (uuid, username, is_hidden, is_vanished, command_spy) " +
-                    "VALUES (?, ?, ?, ?, ?)";
-        }
-
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (ConnectionPool.PooledConnection conn = pool.borrow()) {
+            PreparedStatement stmt = conn.prepare(getUpsertPlayerSql());
             stmt.setString(1, uuid.toString());
             stmt.setString(2, username);
             stmt.setBoolean(3, isHidden);
             stmt.setBoolean(4, isVanished);
             stmt.setBoolean(5, commandSpy);
             stmt.executeUpdate();
+
+            PlayerState state = new PlayerState(uuid, username, isHidden, isVanished, commandSpy);
+            onPlayerStateSaved(lastSavedPlayers.put(uuid, state), state);
         } catch (SQLException e) {
             plugin.getLogger().log(Level.WARNING, "Ошибка сохранения данных игрока", e);
         }
     }
 
+    /**
+     * Записать изменившиеся состояния игроков одной транзакцией с пакетным upsert
+     *
+     * @return сколько строк записано, -1 при ошибке
+     */
+    public int savePlayerStates(Collection<PlayerState> states) {
+        List<PlayerState> dirty = new ArrayList<>();
+        for (PlayerState state : states) {
+            if (!state.equals(lastSavedPlayers.get(state.getUuid()))) {
+                dirty.add(state);
+            }
+        }
+
+        if (dirty.isEmpty()) {
+            return 0;
+        }
+
+        try (ConnectionPool.PooledConnection conn = pool.borrow()) {
+            Connection connection = conn.getConnection();
+            connection.setAutoCommit(false);
+            try {
+                PreparedStatement stmt = conn.prepare(getUpsertPlayerSql());
+                for (PlayerState state : dirty) {
+                    stmt.setString(1, state.getUuid().toString());
+                    stmt.setString(2, state.getUsername());
+                    stmt.setBoolean(3, state.isHidden());
+                    stmt.setBoolean(4, state.isVanished());
+                    stmt.setBoolean(5, state.isCommandSpy());
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "Ошибка сохранения состояния игроков", e);
+            return -1;
+        }
+
+        for (PlayerState state : dirty) {
+            onPlayerStateSaved(lastSavedPlayers.put(state.getUuid(), state), state);
+        }
+        return dirty.size();
+    }
+
+    /**
+     * Забыть последнее сохранённое состояние вышедшего игрока: при следующем
+     * входе оно заново прочитается из БД
+     */
+    public void forgetPlayerState(UUID uuid) {
+        lastSavedPlayers.remove(uuid);
+    }
+
+    private void onPlayerStateSaved(PlayerState previous, PlayerState current) {
+        if (statistics != null) {
+            statistics.onPlayerStateSaved(previous, current);
+        }
+    }
+
+    private String getUpsertPlayerSql() {
+        // H2 в режиме MySQL понимает ON DUPLICATE KEY UPDATE, но не INSERT OR REPLACE
+        if (dbType == DatabaseType.MYSQL || dbType == DatabaseType.H2) {
+            return "INSERT INTO neohide_players (uuid, username, is_hidden, is_vanished, command_spy) " +
+                    "VALUES (?, ?, ?, ?, ?) " +
+                    "ON DUPLICATE KEY UPDATE " +
+                    "username = VALUES(username), is_hidden = VALUES(is_hidden), " +
+                    "is_vanished = VALUES(is_vanished), command_spy = VALUES(command_spy), " +
+                    "last_seen = CURRENT_TIMESTAMP";
+        }
+        return "INSERT OR REPLACE INTO neohide_players (uuid, username, is_hidden, is_vanished, command_spy) " +
+                "VALUES (?, ?, ?, ?, ?)";
+    }
+
+    /**
+     * Сохранённое состояние игрока или null, если строки нет. Прочитанная строка
+     * становится базой, от которой статистика считает разницу при следующей записи.
+     */
     public Map<String, Object> getPlayerData(UUID uuid) {
-        String sql = "SELECT is_hidden, is_vanished, command_spy FROM neohide_players WHERE uuid = ?";
+        String sql = "SELECT username, is_hidden, is_vanished, command_spy FROM neohide_players WHERE uuid = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (ConnectionPool.PooledConnection conn = pool.borrow()) {
+            PreparedStatement stmt = conn.prepare(sql);
             stmt.setString(1, uuid.toString());
-            ResultSet rs = stmt.executeQuery();
-
-            if (rs.next()) {
-                Map<String, Object> data = new HashMap<>();
-                data.put("is_hidden", rs.getBoolean("is_hidden"));
-                data.put("is_vanished", rs.getBoolean("is_vanished"));
-                data.put("command_spy", rs.getBoolean("command_spy"));
-                return data;
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    Map<String, Object> data = new HashMap<>();
+                    data.put("is_hidden", rs.getBoolean("is_hidden"));
+                    data.put("is_vanished", rs.getBoolean("is_vanished"));
+                    data.put("command_spy", rs.getBoolean("command_spy"));
+                    lastSavedPlayers.put(uuid, new PlayerState(uuid, rs.getString("username"),
+                            rs.getBoolean("is_hidden"), rs.getBoolean("is_vanished"), rs.getBoolean("command_spy")));
+                    return data;
+                }
             }
         } catch (SQLException e) {
             plugin.getLogger().log(Level.WARNING, "Ошибка получения данных игрока", e);
@@ -211,44 +551,71 @@ public class DatabaseManager {
     }
 
     // === Logging Methods ===
+    /**
+     * Записать действие в лог. Запись ставится в очередь и пишется пакетом
+     * в фоновом потоке, вызывающий поток не ждёт БД.
+     */
     public void logAction(UUID playerUuid, String playerName, String actionType,
                           String command, String details) {
-        String sql = "INSERT INTO neohide_logs (player_uuid, player_name, action_type, command, details, server_name) " +
-                "VALUES (?, ?, ?, ?, ?, ?)";
-
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, playerUuid != null ? playerUuid.toString() : null);
-            stmt.setString(2, playerName);
-            stmt.setString(3, actionType);
-            stmt.setString(4, command);
-            stmt.setString(5, details);
-            stmt.setString(6, plugin.getServer().getServerIcon().toString());
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.WARNING, "Ошибка записи лога", e);
+        if (writeQueue == null) {
+            return;
         }
+        writeQueue.enqueue(DatabaseWriteQueue.PendingRow.log(
+                playerUuid != null ? playerUuid.toString() : null,
+                playerName, actionType, command, details,
+                plugin.getServer().getName()));
     }
 
+    /**
+     * Пакетная вставка логов в рамках уже открытой транзакции
+     */
+    static final String INSERT_LOG_SQL =
+            "INSERT INTO neohide_logs (player_uuid, player_name, action_type, command, details, server_name, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * Страница логов по смещению. На больших таблицах глубокие страницы
+     * читают и отбрасывают все предыдущие строки — лучше getLogs(Cursor, int).
+     */
     public List<Map<String, Object>> getLogs(int limit, int offset) {
         List<Map<String, Object>> logs = new ArrayList<>();
-        String sql = "SELECT * FROM neohide_logs ORDER BY created_at DESC LIMIT ? OFFSET ?";
+        String sql = "SELECT * FROM neohide_logs ORDER BY created_at DESC, id DESC LIMIT ? OFFSET ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (ConnectionPool.PooledConnection conn = pool.borrow()) {
+            PreparedStatement stmt = conn.prepare(sql);
             stmt.setInt(1, limit);
             stmt.setInt(2, offset);
-            ResultSet rs = stmt.executeQuery();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    logs.add(readLog(rs));
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().log(Level.WARNING, "Ошибка получения логов", e);
+        }
 
-            while (rs.next()) {
-                Map<String, Object> log = new HashMap<>();
-                log.put("id", rs.getInt("id"));
-                log.put("player_uuid", rs.getString("player_uuid"));
-                log.put("player_name", rs.getString("player_name"));
-                log.put("action_type", rs.getString("action_type"));
-                log.put("command", rs.getString("command"));
-                log.put("details", rs.getString("details"));
-                log.put("server_name", rs.getString("server_name"));
-                log.put("created_at", rs.getTimestamp("created_at"));
-                logs.add(log);
+        return logs;
+    }
+
+    /**
+     * Страница логов по курсору: записи строго старше курсора, от новых к старым.
+     * Без курсора — первая страница. Курсор следующей страницы — Cursor.of(последняя строка).
+     */
+    public List<Map<String, Object>> getLogs(Cursor before, int limit) {
+        List<Map<String, Object>> logs = new ArrayList<>();
+        String sql = before == null
+                ? "SELECT * FROM neohide_logs ORDER BY created_at DESC, id DESC LIMIT ?"
+                : "SELECT * FROM neohide_logs WHERE created_at < ? OR (created_at = ? AND id < ?) " +
+                  "ORDER BY created_at DESC, id DESC LIMIT ?";
+
+        try (ConnectionPool.PooledConnection conn = pool.borrow()) {
+            PreparedStatement stmt = conn.prepare(sql);
+            int index = before == null ? 1 : before.bind(stmt, 1);
+            stmt.setInt(index, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    logs.add(readLog(rs));
+                }
             }
         } catch (SQLException e) {
             plugin.getLogger().log(Level.WARNING, "Ошибка получения логов", e);
@@ -257,13 +624,119 @@ public class DatabaseManager {
         return logs;
     }
 
+    private Map<String, Object> readLog(ResultSet rs) throws SQLException {
+        Map<String, Object> log = new HashMap<>();
+        log.put("id", rs.getInt("id"));
+        log.put("player_uuid", rs.getString("player_uuid"));
+        log.put("player_name", rs.getString("player_name"));
+        log.put("action_type", rs.getString("action_type"));
+        log.put("command", rs.getString("command"));
+        log.put("details", rs.getString("details"));
+        log.put("server_name", rs.getString("server_name"));
+        log.put("created_at", rs.getTimestamp("created_at"));
+        return log;
+    }
+
+    /**
+     * Получатель строк выгрузки. Карта строки одна на всю выгрузку и
+     * перезаписывается — сохранять её между вызовами нельзя.
+     */
+    public interface LogRowHandler {
+        void handle(Map<String, Object> row) throws IOException;
+    }
+
+    /**
+     * Выгрузить логи потоком, от старых к новым. Строки читаются из ResultSet
+     * только вперёд, с fetch size, и сразу отдаются обработчику — память не
+     * зависит от количества строк. Любой фильтр может быть null.
+     *
+     * @return сколько строк выгружено
+     */
+    public long exportLogs(Timestamp from, Timestamp to, String player, String actionType,
+                           LogRowHandler handler) throws SQLException, IOException {
+        StringBuilder sql = new StringBuilder(
+                "SELECT id, player_uuid, player_name, action_type, command, details, server_name, created_at " +
+                "FROM neohide_logs WHERE 1 = 1");
+        List<Object> params = new ArrayList<>();
+        if (from != null) {
+            sql.append(" AND created_at >= ?");
+            params.add(from);
+        }
+        if (to != null) {
+            sql.append(" AND created_at < ?");
+            params.add(to);
+        }
+        if (player != null) {
+            // UUID ищем по player_uuid, всё остальное — по нику
+            sql.append(isUuid(player) ? " AND player_uuid = ?" : " AND player_name = ?");
+            params.add(player);
+        }
+        if (actionType != null) {
+            sql.append(" AND action_type = ?");
+            params.add(actionType);
+        }
+        sql.append(" ORDER BY created_at, id");
+
+        long rows = 0;
+        try (ConnectionPool.PooledConnection conn = pool.borrow();
+             PreparedStatement stmt = conn.getConnection().prepareStatement(sql.toString(),
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            // Connector/J отдаёт строки по одной только при fetch size = Integer.MIN_VALUE
+            stmt.setFetchSize(dbType == DatabaseType.MYSQL ? Integer.MIN_VALUE : EXPORT_FETCH_SIZE);
+            for (int i = 0; i < params.size(); i++) {
+                stmt.setObject(i + 1, params.get(i));
+            }
+
+            Map<String, Object> row = new LinkedHashMap<>();
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    row.put("id", rs.getInt(1));
+                    row.put("player_uuid", rs.getString(2));
+                    row.put("player_name", rs.getString(3));
+                    row.put("action_type", rs.getString(4));
+                    row.put("command", rs.getString(5));
+                    row.put("details", rs.getString(6));
+                    row.put("server_name", rs.getString(7));
+                    row.put("created_at", rs.getTimestamp(8));
+
+                    try {
+                        handler.handle(row);
+                    } catch (IOException e) {
+                        // Клиент отключился — не дочитываем оставшиеся строки
+                        stmt.cancel();
+                        throw e;
+                    }
+
+                    if (++rows % EXPORT_FETCH_SIZE == 0) {
+                        conn.touch();
+                    }
+                }
+            }
+        }
+
+        return rows;
+    }
+
+    private static final int EXPORT_FETCH_SIZE = 1000;
+
+    private static boolean isUuid(String value) {
+        try {
+            UUID.fromString(value);
+            return value.length() == 36;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
     public int getTotalLogs() {
         String sql = "SELECT COUNT(*) as total FROM neohide_logs";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("total");
+        try (ConnectionPool.PooledConnection conn = pool.borrow()) {
+            PreparedStatement stmt = conn.prepare(sql);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (rs.next()) {
+                    return rs.getInt("total");
+                }
             }
         } catch (SQLException e) {
             plugin.getLogger().log(Level.WARNING, "Ошибка получения количества логов", e);
@@ -281,10 +754,14 @@ public class DatabaseManager {
             sql = "INSERT OR IGNORE INTO neohide_hidden_commands (command, hidden_by) VALUES (?, ?)";
         }
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (ConnectionPool.PooledConnection conn = pool.borrow()) {
+            PreparedStatement stmt = conn.prepare(sql);
             stmt.setString(1, command.toLowerCase());
             stmt.setString(2, hiddenBy != null ? hiddenBy.toString() : null);
-            stmt.executeUpdate();
+            int inserted = stmt.executeUpdate();
+            if (statistics != null) {
+                statistics.onHiddenCommandsChanged(inserted);
+            }
         } catch (SQLException e) {
             plugin.getLogger().log(Level.WARNING, "Ошибка сохранения скрытой команды", e);
         }
@@ -293,9 +770,13 @@ public class DatabaseManager {
     public void removeHiddenCommand(String command) {
         String sql = "DELETE FROM neohide_hidden_commands WHERE command = ?";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+        try (ConnectionPool.PooledConnection conn = pool.borrow()) {
+            PreparedStatement stmt = conn.prepare(sql);
             stmt.setString(1, command.toLowerCase());
-            stmt.executeUpdate();
+            int deleted = stmt.executeUpdate();
+            if (statistics != null) {
+                statistics.onHiddenCommandsChanged(-deleted);
+            }
         } catch (SQLException e) {
             plugin.getLogger().log(Level.WARNING, "Ошибка удаления скрытой команды", e);
         }
@@ -305,11 +786,12 @@ public class DatabaseManager {
         List<String> commands = new ArrayList<>();
         String sql = "SELECT command FROM neohide_hidden_commands";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            ResultSet rs = stmt.executeQuery();
-
-            while (rs.next()) {
-                commands.add(rs.getString("command"));
+        try (ConnectionPool.PooledConnection conn = pool.borrow()) {
+            PreparedStatement stmt = conn.prepare(sql);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    commands.add(rs.getString("command"));
+                }
             }
         } catch (SQLException e) {
             plugin.getLogger().log(Level.WARNING, "Ошибка получения скрытых команд", e);
@@ -319,40 +801,55 @@ public class DatabaseManager {
     }
 
     // === Violations Methods ===
+    /**
+     * Записать нарушение. Как и logAction, пишется через очередь отложенной записи.
+     */
     public void logViolation(UUID playerUuid, String playerName, String violationType,
                              int severity, String details) {
-        String sql = "INSERT INTO neohide_violations (player_uuid, player_name, violation_type, severity, details) " +
-                "VALUES (?, ?, ?, ?, ?)";
-
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, playerUuid != null ? playerUuid.toString() : null);
-            stmt.setString(2, playerName);
-            stmt.setString(3, violationType);
-            stmt.setInt(4, severity);
-            stmt.setString(5, details);
-            stmt.executeUpdate();
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.WARNING, "Ошибка записи нарушения", e);
+        if (writeQueue == null) {
+            return;
         }
+        writeQueue.enqueue(DatabaseWriteQueue.PendingRow.violation(
+                playerUuid != null ? playerUuid.toString() : null,
+                playerName, violationType, severity, details));
     }
 
-    public List<Map<String, Object>> getActiveViolations(int limit) {
-        List<Map<String, Object>> violations = new ArrayList<>();
-        String sql = "SELECT * FROM neohide_violations WHERE resolved = FALSE ORDER BY created_at DESC LIMIT ?";
+    static final String INSERT_VIOLATION_SQL =
+            "INSERT INTO neohide_violations (player_uuid, player_name, violation_type, severity, details, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?)";
 
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, limit);
-            ResultSet rs = stmt.executeQuery();
+    public List<Map<String, Object>> getActiveViolations(int limit) {
+        return getActiveViolations(null, limit);
+    }
 
-            while (rs.next()) {
-                Map<String, Object> violation = new HashMap<>();
-                violation.put("id", rs.getInt("id"));
-                violation.put("player_name", rs.getString("player_name"));
-                violation.put("violation_type", rs.getString("violation_type"));
-                violation.put("severity", rs.getInt("severity"));
-                violation.put("details", rs.getString("details"));
-                violation.put("created_at", rs.getTimestamp("created_at"));
-                violations.add(violation);
+    /**
+     * Нерешённые нарушения по курсору, от новых к старым.
+     * Выборка идёт по индексу (resolved, created_at).
+     */
+    public List<Map<String, Object>> getActiveViolations(Cursor before, int limit) {
+        List<Map<String, Object>> violations = new ArrayList<>();
+        String sql = before == null
+                ? "SELECT * FROM neohide_violations WHERE resolved = FALSE " +
+                  "ORDER BY created_at DESC, id DESC LIMIT ?"
+                : "SELECT * FROM neohide_violations WHERE resolved = FALSE " +
+                  "AND (created_at < ? OR (created_at = ? AND id < ?)) " +
+                  "ORDER BY created_at DESC, id DESC LIMIT ?";
+
+        try (ConnectionPool.PooledConnection conn = pool.borrow()) {
+            PreparedStatement stmt = conn.prepare(sql);
+            int index = before == null ? 1 : before.bind(stmt, 1);
+            stmt.setInt(index, limit);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Map<String, Object> violation = new HashMap<>();
+                    violation.put("id", rs.getInt("id"));
+                    violation.put("player_name", rs.getString("player_name"));
+                    violation.put("violation_type", rs.getString("violation_type"));
+                    violation.put("severity", rs.getInt("severity"));
+                    violation.put("details", rs.getString("details"));
+                    violation.put("created_at", rs.getTimestamp("created_at"));
+                    violations.add(violation);
+                }
             }
         } catch (SQLException e) {
             plugin.getLogger().log(Level.WARNING, "Ошибка получения нарушений", e);
@@ -362,12 +859,51 @@ public class DatabaseManager {
     }
 
     // === Statistics ===
+    /**
+     * Статистика из счётчиков в памяти, без обращения к БД
+     */
     public Map<String, Object> getStatistics() {
-        Map<String, Object> stats = new HashMap<>();
+        if (statistics == null) {
+            return new HashMap<>();
+        }
+        return statistics.snapshot();
+    }
+
+    /**
+     * Наибольшие id логов и нарушений (0, если таблица пуста). Запрос идёт по
+     * первичному ключу и выполняется быстро даже на больших таблицах.
+     * Соединение передаётся готовым, чтобы ожидание пула не шло под блокировкой сверки.
+     */
+    long[] getMaxRowIds(ConnectionPool.PooledConnection conn) throws SQLException {
+        String[] queries = {
+                "SELECT MAX(id) FROM neohide_logs",
+                "SELECT MAX(id) FROM neohide_violations"
+        };
+
+        long[] ids = new long[queries.length];
+        try (Statement stmt = conn.getConnection().createStatement()) {
+            for (int i = 0; i < queries.length; i++) {
+                try (ResultSet rs = stmt.executeQuery(queries[i])) {
+                    if (rs.next()) {
+                        ids[i] = rs.getLong(1);
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Точный пересчёт через COUNT(*). Логи и нарушения считаются только до
+     * переданных id, чтобы результат можно было сравнить со счётчиками,
+     * снятыми вместе с этими id. Вызывается только фоновой сверкой статистики.
+     */
+    Map<String, Integer> countStatistics(long maxLogId, long maxViolationId) throws SQLException {
+        Map<String, Integer> stats = new HashMap<>();
 
         String[] queries = {
-                "SELECT COUNT(*) as total_logs FROM neohide_logs",
-                "SELECT COUNT(*) as total_violations FROM neohide_violations WHERE resolved = 0",
+                "SELECT COUNT(*) as total_logs FROM neohide_logs WHERE id <= " + maxLogId,
+                "SELECT COUNT(*) as total_violations FROM neohide_violations WHERE resolved = 0 AND id <= " + maxViolationId,
                 "SELECT COUNT(*) as hidden_commands FROM neohide_hidden_commands",
                 "SELECT COUNT(DISTINCT player_uuid) as unique_players FROM neohide_logs WHERE player_uuid IS NOT NULL",
                 "SELECT COUNT(*) as vanished_players FROM neohide_players WHERE is_vanished = 1",
@@ -377,44 +913,53 @@ public class DatabaseManager {
         String[] keys = {"total_logs", "total_violations", "hidden_commands",
                 "unique_players", "vanished_players", "hidden_players"};
 
-        try (Statement stmt = connection.createStatement()) {
+        try (ConnectionPool.PooledConnection conn = pool.borrow();
+             Statement stmt = conn.getConnection().createStatement()) {
             for (int i = 0; i < queries.length; i++) {
-                ResultSet rs = stmt.executeQuery(queries[i]);
-                if (rs.next()) {
-                    stats.put(keys[i], rs.getInt(1));
+                try (ResultSet rs = stmt.executeQuery(queries[i])) {
+                    if (rs.next()) {
+                        stats.put(keys[i], rs.getInt(1));
+                    }
                 }
             }
-
-            // Получаем последние 5 логов
-            List<Map<String, Object>> recentLogs = getLogs(5, 0);
-            stats.put("recent_logs", recentLogs);
-
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.WARNING, "Ошибка получения статистики", e);
         }
 
         return stats;
     }
 
     public void close() {
-        try {
-            if (connection != null && !connection.isClosed()) {
-                connection.close();
-            }
-        } catch (SQLException e) {
-            plugin.getLogger().log(Level.WARNING, "Ошибка закрытия соединения с БД", e);
+        if (statistics != null) {
+            statistics.stop();
+        }
+
+        // Сначала дописываем всё, что осталось в очереди
+        if (writeQueue != null) {
+            writeQueue.stop();
+            writeQueue = null;
+        }
+
+        if (pool != null) {
+            pool.close();
         }
     }
 
     public boolean isConnected() {
-        try {
-            return connection != null && !connection.isClosed();
-        } catch (SQLException e) {
-            return false;
-        }
+        return pool != null && !pool.isClosed();
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
     }
 
     public DatabaseType getDatabaseType() {
         return dbType;
     }
+
+    public DatabaseWriteQueue getWriteQueue() {
+        return writeQueue;
+    }
+
+    DatabaseStatistics getStatisticsTracker() {
+        return statistics;
+    }
 }
\ No newline at end of file
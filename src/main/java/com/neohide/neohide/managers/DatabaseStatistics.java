@@ -0,0 +1,230 @@
+package com.neohide.neohide.managers;
+
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Счётчики статистики БД в памяти.
+ *
+ * Счётчики обновляет путь записи (очередь логов, скрытые команды, состояние игроков),
+ * поэтому чтение статистики не обращается к JDBC. Фоновая сверка периодически
+ * пересчитывает их через COUNT(*) и исправляет накопившееся расхождение.
+ */
+public class DatabaseStatistics {
+
+    private static final int RECENT_LOGS = 5;
+
+    private final JavaPlugin plugin;
+    private final DatabaseManager databaseManager;
+    private final long reconcileIntervalTicks;
+
+    // Коммит пакета логов и его учёт идут под этой блокировкой. Сверка под ней же
+    // только снимает счётчики и наибольшие id, сами COUNT идут без блокировки
+    private final Object rowsLock = new Object();
+
+    private final AtomicLong totalLogs = new AtomicLong();
+    private final AtomicLong totalViolations = new AtomicLong();
+    private final AtomicLong hiddenCommands = new AtomicLong();
+    private final AtomicLong uniquePlayers = new AtomicLong();
+    private final AtomicLong vanishedPlayers = new AtomicLong();
+    private final AtomicLong hiddenPlayers = new AtomicLong();
+
+    // Кольцо последних логов, recentHead — куда пишется следующий
+    private final Map<String, Object>[] recentLogs;
+    private int recentHead;
+    private int recentCount;
+
+    private volatile long lastReconciled;
+    private BukkitTask reconcileTask;
+
+    @SuppressWarnings("unchecked")
+    public DatabaseStatistics(JavaPlugin plugin, DatabaseManager databaseManager) {
+        this.plugin = plugin;
+        this.databaseManager = databaseManager;
+        this.reconcileIntervalTicks = Math.max(1,
+                plugin.getConfig().getLong("database.statistics.reconcile-interval-seconds", 300)) * 20L;
+        this.recentLogs = new Map[RECENT_LOGS];
+    }
+
+    /**
+     * Первая сверка сразу, дальше — по таймеру
+     */
+    public void start() {
+        if (reconcileTask == null) {
+            reconcileTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(
+                    plugin, this::reconcile, 0L, reconcileIntervalTicks);
+        }
+    }
+
+    public void stop() {
+        if (reconcileTask != null) {
+            reconcileTask.cancel();
+            reconcileTask = null;
+        }
+    }
+
+    // ========== Путь записи ==========
+
+    /**
+     * Блокировка, под которой очередь записи делает коммит и вызывает onRowsWritten
+     */
+    Object getRowsLock() {
+        return rowsLock;
+    }
+
+    /**
+     * Пакет логов и нарушений записан в БД. Вызывается под getRowsLock()
+     */
+    void onRowsWritten(List<DatabaseWriteQueue.PendingRow> rows) {
+        for (DatabaseWriteQueue.PendingRow row : rows) {
+            if (row.getType() == DatabaseWriteQueue.RowType.LOG) {
+                totalLogs.incrementAndGet();
+                pushRecentLog(row);
+            } else {
+                // Нарушения создаются нерешёнными
+                totalViolations.incrementAndGet();
+            }
+        }
+    }
+
+    void onHiddenCommandsChanged(int delta) {
+        if (delta != 0) {
+            hiddenCommands.addAndGet(delta);
+        }
+    }
+
+    /**
+     * Состояние игрока записано. Прошлое состояние берётся из строки, прочитанной
+     * при входе; если строки не было, игрок считается не скрытым и не в ваниш.
+     */
+    void onPlayerStateSaved(DatabaseManager.PlayerState previous, DatabaseManager.PlayerState current) {
+        boolean wasVanished = previous != null && previous.isVanished();
+        boolean wasHidden = previous != null && previous.isHidden();
+        if (wasVanished != current.isVanished()) {
+            vanishedPlayers.addAndGet(current.isVanished() ? 1 : -1);
+        }
+        if (wasHidden != current.isHidden()) {
+            hiddenPlayers.addAndGet(current.isHidden() ? 1 : -1);
+        }
+    }
+
+    private synchronized void pushRecentLog(DatabaseWriteQueue.PendingRow row) {
+        Map<String, Object> log = new HashMap<>();
+        log.put("player_uuid", row.getPlayerUuid());
+        log.put("player_name", row.getPlayerName());
+        log.put("action_type", row.getActionType());
+        log.put("command", row.getCommand());
+        log.put("details", row.getDetails());
+        log.put("server_name", row.getServerName());
+        log.put("created_at", new Timestamp(row.getCreatedAt()));
+        addRecent(log);
+    }
+
+    private void addRecent(Map<String, Object> log) {
+        recentLogs[recentHead] = log;
+        recentHead = (recentHead + 1) % RECENT_LOGS;
+        if (recentCount < RECENT_LOGS) {
+            recentCount++;
+        }
+    }
+
+    // ========== Чтение ==========
+
+    /**
+     * Текущая статистика. Ключи те же, что раньше отдавал getStatistics.
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("total_logs", totalLogs.get());
+        stats.put("total_violations", totalViolations.get());
+        stats.put("hidden_commands", hiddenCommands.get());
+        stats.put("unique_players", uniquePlayers.get());
+        stats.put("vanished_players", vanishedPlayers.get());
+        stats.put("hidden_players", hiddenPlayers.get());
+        stats.put("recent_logs", getRecentLogs());
+        stats.put("reconciled_at", lastReconciled);
+        return stats;
+    }
+
+    /**
+     * Последние логи, от новых к старым
+     */
+    public synchronized List<Map<String, Object>> getRecentLogs() {
+        List<Map<String, Object>> logs = new ArrayList<>(recentCount);
+        for (int i = 1; i <= recentCount; i++) {
+            logs.add(new HashMap<>(recentLogs[(recentHead - i + RECENT_LOGS) % RECENT_LOGS]));
+        }
+        return logs;
+    }
+
+    // ========== Сверка ==========
+
+    /**
+     * Пересчитать счётчики по БД. Изменения, пришедшие во время запроса,
+     * сохраняются: к значению из БД прибавляется прирост за время сверки.
+     * Логи и нарушения считаются до id, снятых вместе со счётчиками под
+     * блокировкой записи, поэтому пакет, записанный во время COUNT, не
+     * попадает ни в результат, ни в снятое значение и не считается дважды.
+     */
+    public void reconcile() {
+        if (!databaseManager.isConnected()) {
+            return;
+        }
+
+        long[] before = new long[6];
+        Map<String, Integer> counts;
+        List<Map<String, Object>> latest;
+        try {
+            long[] maxIds;
+            try (ConnectionPool.PooledConnection conn = databaseManager.getPool().borrow()) {
+                synchronized (rowsLock) {
+                    maxIds = databaseManager.getMaxRowIds(conn);
+                    before[0] = totalLogs.get();
+                    before[1] = totalViolations.get();
+                }
+            }
+            before[2] = hiddenCommands.get();
+            before[3] = uniquePlayers.get();
+            before[4] = vanishedPlayers.get();
+            before[5] = hiddenPlayers.get();
+
+            counts = databaseManager.countStatistics(maxIds[0], maxIds[1]);
+            latest = recentCount == 0 ? databaseManager.getLogs(null, RECENT_LOGS) : Collections.emptyList();
+        } catch (Exception e) {
+            plugin.getLogger().log(Level.WARNING, "Ошибка сверки статистики", e);
+            return;
+        }
+        if (counts.isEmpty()) {
+            return;
+        }
+
+        adjust(totalLogs, counts.get("total_logs"), before[0]);
+        adjust(totalViolations, counts.get("total_violations"), before[1]);
+        adjust(hiddenCommands, counts.get("hidden_commands"), before[2]);
+        adjust(uniquePlayers, counts.get("unique_players"), before[3]);
+        adjust(vanishedPlayers, counts.get("vanished_players"), before[4]);
+        adjust(hiddenPlayers, counts.get("hidden_players"), before[5]);
+
+        synchronized (this) {
+            // Кольцо заполняется из БД только при старте, дальше его ведёт путь записи
+            if (recentCount == 0) {
+                for (int i = latest.size() - 1; i >= 0; i--) {
+                    addRecent(latest.get(i));
+                }
+            }
+        }
+
+        lastReconciled = System.currentTimeMillis();
+    }
+
+    private void adjust(AtomicLong counter, Integer actual, long before) {
+        if (actual != null) {
+            counter.addAndGet(actual - before);
+        }
+    }
+}
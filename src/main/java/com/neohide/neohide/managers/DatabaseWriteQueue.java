@@ -0,0 +1,616 @@
+package com.neohide.neohide.managers;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * Очередь отложенной записи логов и нарушений.
+ *
+ * Вызывающие потоки только кладут строку в ограниченный кольцевой буфер,
+ * единственный поток-писатель забирает их пачками (до batch-size строк
+ * или flush-interval-ms) и пишет одной транзакцией через addBatch/executeBatch.
+ * При переполнении работает выбранная политика: DROP_OLDEST, BLOCK или SPILL.
+ */
+public class DatabaseWriteQueue {
+
+    public enum OverflowPolicy {
+        DROP_OLDEST, BLOCK, SPILL
+    }
+
+    // Пауза перед повтором после ошибки записи удваивается до минуты
+    private static final long MIN_BACKOFF_MILLIS = 1000L;
+    private static final long MAX_BACKOFF_MILLIS = 60000L;
+
+    private final JavaPlugin plugin;
+    private final DatabaseManager databaseManager;
+    private final BlockingQueue<PendingRow> queue;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final OverflowPolicy overflowPolicy;
+    private final File spillFile;
+    private final Object spillLock = new Object();
+
+    private Thread writerThread;
+    private volatile boolean running;
+    private Connection connection;
+
+    // Состояние недоступности БД, меняется только потоком-писателем
+    private volatile boolean outage;
+    private long backoffMillis;
+    private long retryAtMillis;
+    private int failedAttempts;
+
+    // Метрики
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private final AtomicLong rowsDropped = new AtomicLong();
+    private final AtomicLong rowsSpilled = new AtomicLong();
+    private final AtomicLong batchesWritten = new AtomicLong();
+    private volatile int lastBatchSize;
+    private volatile long lastFlushMillis;
+    private volatile long maxFlushMillis;
+    private final AtomicLong totalFlushMillis = new AtomicLong();
+
+    public DatabaseWriteQueue(JavaPlugin plugin, DatabaseManager databaseManager) {
+        this.plugin = plugin;
+        this.databaseManager = databaseManager;
+
+        int capacity = Math.max(16, plugin.getConfig().getInt("database.write-queue.capacity", 10000));
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = Math.max(1, plugin.getConfig().getInt("database.write-queue.batch-size", 500));
+        this.flushIntervalMillis = Math.max(1, plugin.getConfig().getLong("database.write-queue.flush-interval-ms", 250));
+        this.overflowPolicy = parsePolicy(plugin.getConfig().getString("database.write-queue.overflow", "DROP_OLDEST"));
+        this.spillFile = new File(plugin.getDataFolder(), "write-queue-spill.log");
+    }
+
+    private OverflowPolicy parsePolicy(String value) {
+        try {
+            return OverflowPolicy.valueOf(value.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("Неизвестная политика database.write-queue.overflow: " + value + ", используется DROP_OLDEST");
+            return OverflowPolicy.DROP_OLDEST;
+        }
+    }
+
+    public void start() {
+        running = true;
+        writerThread = new Thread(this::runWriter, "NeoHide-DB-Writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Остановить писателя, дописав всё, что осталось в очереди
+     */
+    public void stop() {
+        running = false;
+        if (writerThread != null) {
+            writerThread.interrupt();
+            try {
+                writerThread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writerThread = null;
+        }
+    }
+
+    /**
+     * Поставить строку в очередь. Не обращается к БД.
+     */
+    public void enqueue(PendingRow row) {
+        if (queue.offer(row)) {
+            return;
+        }
+
+        switch (overflowPolicy) {
+            case BLOCK:
+                try {
+                    queue.put(row);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    rowsDropped.incrementAndGet();
+                }
+                break;
+            case SPILL:
+                spill(row);
+                break;
+            default:
+                // Вытесняем самую старую запись
+                while (!queue.offer(row)) {
+                    if (queue.poll() != null) {
+                        rowsDropped.incrementAndGet();
+                    }
+                }
+        }
+    }
+
+    // ========== Поток-писатель ==========
+
+    private void runWriter() {
+        List<PendingRow> batch = new ArrayList<>(batchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingRow first = running
+                        ? queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS)
+                        : queue.poll();
+                if (first == null) {
+                    replaySpill();
+                    continue;
+                }
+
+                batch.add(first);
+                long deadline = System.currentTimeMillis() + flushIntervalMillis;
+
+                // Добираем пачку до batch-size строк или до истечения интервала
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0 || !running) {
+                        break;
+                    }
+                    PendingRow next = queue.poll(wait, TimeUnit.MILLISECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+
+                writeRows(batch);
+                batch.clear();
+
+            } catch (InterruptedException e) {
+                // Прерывание приходит из stop(): накопленная пачка допишется
+                // в следующих итерациях, пока очередь не опустеет
+            }
+        }
+
+        // Дописываем то, что успело накопиться во время остановки
+        queue.drainTo(batch);
+        if (!batch.isEmpty()) {
+            writeRows(batch);
+        }
+        closeConnection();
+    }
+
+    /**
+     * Записать пачку из очереди. При SPILL строки, которые не удалось записать,
+     * уходят на диск; пока идёт пауза после ошибки, они уходят туда без попытки записи.
+     */
+    private void writeRows(List<PendingRow> batch) {
+        if (overflowPolicy == OverflowPolicy.SPILL) {
+            if ((running && isBackingOff()) || !writeBatch(batch)) {
+                for (PendingRow row : batch) {
+                    spill(row);
+                }
+            }
+        } else if (!writeBatch(batch)) {
+            rowsDropped.addAndGet(batch.size());
+        }
+    }
+
+    /**
+     * Записать пачку одной транзакцией
+     *
+     * @return false, если записать не удалось (строки не записаны)
+     */
+    private boolean writeBatch(List<PendingRow> batch) {
+        long started = System.nanoTime();
+        boolean written;
+
+        try {
+            Connection conn = getConnection();
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+
+            try (PreparedStatement logStmt = conn.prepareStatement(DatabaseManager.INSERT_LOG_SQL);
+                 PreparedStatement violationStmt = conn.prepareStatement(DatabaseManager.INSERT_VIOLATION_SQL)) {
+
+                int logs = 0;
+                int violations = 0;
+                for (PendingRow row : batch) {
+                    if (row.type == RowType.LOG) {
+                        row.bindLog(logStmt);
+                        logStmt.addBatch();
+                        logs++;
+                    } else {
+                        row.bindViolation(violationStmt);
+                        violationStmt.addBatch();
+                        violations++;
+                    }
+                }
+
+                if (logs > 0) {
+                    logStmt.executeBatch();
+                }
+                if (violations > 0) {
+                    violationStmt.executeBatch();
+                }
+
+                DatabaseStatistics statistics = databaseManager.getStatisticsTracker();
+                if (statistics != null) {
+                    // Сверка не должна увидеть пакет в БД, пока он не учтён в счётчиках
+                    synchronized (statistics.getRowsLock()) {
+                        conn.commit();
+                        statistics.onRowsWritten(batch);
+                    }
+                } else {
+                    conn.commit();
+                }
+
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+
+            rowsWritten.addAndGet(batch.size());
+            batchesWritten.incrementAndGet();
+            lastBatchSize = batch.size();
+            onWriteSucceeded();
+            written = true;
+
+        } catch (Exception e) {
+            closeConnection();
+            onWriteFailed(batch.size(), e);
+            written = false;
+        }
+
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        lastFlushMillis = elapsed;
+        totalFlushMillis.addAndGet(elapsed);
+        if (elapsed > maxFlushMillis) {
+            maxFlushMillis = elapsed;
+        }
+        return written;
+    }
+
+    private boolean isBackingOff() {
+        return outage && System.currentTimeMillis() < retryAtMillis;
+    }
+
+    // Стек пишется один раз на всю недоступность БД, дальше только растёт пауза
+    private void onWriteFailed(int rows, Exception e) {
+        failedAttempts++;
+        backoffMillis = backoffMillis == 0 ? MIN_BACKOFF_MILLIS : Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+        retryAtMillis = System.currentTimeMillis() + backoffMillis;
+        if (!outage) {
+            outage = true;
+            plugin.getLogger().log(Level.WARNING, "Ошибка пакетной записи в БД (" + rows + " строк), "
+                    + "повторные попытки с паузой до " + MAX_BACKOFF_MILLIS / 1000 + " с", e);
+        }
+    }
+
+    private void onWriteSucceeded() {
+        if (outage) {
+            plugin.getLogger().info("Запись в БД восстановлена после " + failedAttempts + " неудачных попыток");
+        }
+        outage = false;
+        backoffMillis = 0;
+        retryAtMillis = 0;
+        failedAttempts = 0;
+    }
+
+    private Connection getConnection() throws SQLException, ClassNotFoundException {
+        if (connection == null || connection.isClosed()) {
+            connection = databaseManager.openConnection();
+        }
+        return connection;
+    }
+
+    private void closeConnection() {
+        try {
+            if (connection != null && !connection.isClosed()) {
+                connection.close();
+            }
+        } catch (SQLException ignored) {
+        }
+        connection = null;
+    }
+
+    // ========== Сброс на диск (SPILL) ==========
+
+    private void spill(PendingRow row) {
+        synchronized (spillLock) {
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(spillFile, true), StandardCharsets.UTF_8)) {
+                writer.write(row.encode());
+                writer.write('\n');
+                rowsSpilled.incrementAndGet();
+            } catch (IOException e) {
+                rowsDropped.incrementAndGet();
+                plugin.getLogger().warning("Не удалось сбросить строку очереди на диск: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Когда очередь пуста, дописываем в БД строки, сброшенные на диск.
+     * На первой неудачной пачке повтор останавливается: файл .replay остаётся
+     * с ещё не записанными строками до следующей попытки после паузы.
+     */
+    private void replaySpill() {
+        if (isBackingOff()) {
+            return;
+        }
+        File replayFile = new File(spillFile.getPath() + ".replay");
+
+        synchronized (spillLock) {
+            if (!replayFile.exists()) {
+                if (!spillFile.exists() || spillFile.length() == 0) {
+                    return;
+                }
+                if (!spillFile.renameTo(replayFile)) {
+                    return;
+                }
+            }
+        }
+
+        List<PendingRow> batch = new ArrayList<>(batchSize);
+        long linesRead = 0;
+        long linesWritten = 0;
+        boolean failed = false;
+        try (BufferedReader reader = Files.newBufferedReader(replayFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                linesRead++;
+                PendingRow row = PendingRow.decode(line);
+                if (row != null) {
+                    batch.add(row);
+                }
+                if (batch.size() >= batchSize) {
+                    if (!writeBatch(batch)) {
+                        failed = true;
+                        break;
+                    }
+                    linesWritten = linesRead;
+                    batch.clear();
+                }
+            }
+            if (!failed && !batch.isEmpty()) {
+                failed = !writeBatch(batch);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("Не удалось прочитать " + replayFile.getName() + ": " + e.getMessage());
+            return;
+        }
+
+        if (failed) {
+            dropReplayedLines(replayFile, linesWritten);
+            return;
+        }
+        if (!replayFile.delete()) {
+            plugin.getLogger().warning("Не удалось удалить " + replayFile.getName());
+        }
+    }
+
+    // Убрать из файла повтора уже записанные строки, чтобы следующая попытка их не продублировала
+    private void dropReplayedLines(File replayFile, long lines) {
+        if (lines == 0) {
+            return;
+        }
+
+        File tempFile = new File(replayFile.getPath() + ".tmp");
+        try (BufferedReader reader = Files.newBufferedReader(replayFile.toPath(), StandardCharsets.UTF_8);
+             BufferedWriter writer = Files.newBufferedWriter(tempFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            long index = 0;
+            while ((line = reader.readLine()) != null) {
+                if (index++ >= lines) {
+                    writer.write(line);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("Не удалось обновить " + replayFile.getName() + ": " + e.getMessage());
+            return;
+        }
+
+        try {
+            Files.move(tempFile.toPath(), replayFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Не удалось обновить " + replayFile.getName() + ": " + e.getMessage());
+        }
+    }
+
+    // ========== Метрики ==========
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        long batches = batchesWritten.get();
+        stats.put("queue_depth", queue.size());
+        stats.put("queue_capacity", queue.size() + queue.remainingCapacity());
+        stats.put("overflow_policy", overflowPolicy.name());
+        stats.put("rows_written", rowsWritten.get());
+        stats.put("rows_dropped", rowsDropped.get());
+        stats.put("rows_spilled", rowsSpilled.get());
+        stats.put("outage", outage);
+        stats.put("batches_written", batches);
+        stats.put("last_batch_size", lastBatchSize);
+        stats.put("avg_batch_size", batches > 0 ? rowsWritten.get() / batches : 0);
+        stats.put("last_flush_ms", lastFlushMillis);
+        stats.put("max_flush_ms", maxFlushMillis);
+        stats.put("avg_flush_ms", batches > 0 ? totalFlushMillis.get() / batches : 0);
+        return stats;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    // ========== Строка очереди ==========
+
+    public enum RowType {
+        LOG, VIOLATION
+    }
+
+    /**
+     * Неизменяемая строка, ожидающая записи. Время события фиксируется при постановке в очередь.
+     */
+    public static final class PendingRow {
+        private final RowType type;
+        private final String playerUuid;
+        private final String playerName;
+        private final String actionType;
+        private final String command;
+        private final String details;
+        private final String serverName;
+        private final int severity;
+        private final long createdAt;
+
+        private PendingRow(RowType type, String playerUuid, String playerName, String actionType,
+                           String command, String details, String serverName, int severity, long createdAt) {
+            this.type = type;
+            this.playerUuid = playerUuid;
+            this.playerName = playerName;
+            this.actionType = actionType;
+            this.command = command;
+            this.details = details;
+            this.serverName = serverName;
+            this.severity = severity;
+            this.createdAt = createdAt;
+        }
+
+        static PendingRow log(String playerUuid, String playerName, String actionType,
+                              String command, String details, String serverName) {
+            return new PendingRow(RowType.LOG, playerUuid, playerName, actionType,
+                    command, details, serverName, 0, System.currentTimeMillis());
+        }
+
+        static PendingRow violation(String playerUuid, String playerName, String violationType,
+                                    int severity, String details) {
+            return new PendingRow(RowType.VIOLATION, playerUuid, playerName, violationType,
+                    null, details, null, severity, System.currentTimeMillis());
+        }
+
+        private void bindLog(PreparedStatement stmt) throws SQLException {
+            stmt.setString(1, playerUuid);
+            stmt.setString(2, playerName);
+            stmt.setString(3, actionType);
+            stmt.setString(4, command);
+            stmt.setString(5, details);
+            stmt.setString(6, serverName);
+            stmt.setTimestamp(7, new Timestamp(createdAt));
+        }
+
+        private void bindViolation(PreparedStatement stmt) throws SQLException {
+            stmt.setString(1, playerUuid);
+            stmt.setString(2, playerName);
+            stmt.setString(3, actionType);
+            stmt.setInt(4, severity);
+            stmt.setString(5, details);
+            stmt.setTimestamp(6, new Timestamp(createdAt));
+        }
+
+        public RowType getType() {
+            return type;
+        }
+
+        public String getPlayerUuid() {
+            return playerUuid;
+        }
+
+        public String getPlayerName() {
+            return playerName;
+        }
+
+        public String getActionType() {
+            return actionType;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        public String getDetails() {
+            return details;
+        }
+
+        public String getServerName() {
+            return serverName;
+        }
+
+        public int getSeverity() {
+            return severity;
+        }
+
+        public long getCreatedAt() {
+            return createdAt;
+        }
+
+        // Формат файла сброса: поля через табуляцию, \t \n \\ экранируются, null — "\0"
+        private String encode() {
+            StringBuilder builder = new StringBuilder();
+            builder.append(type.name()).append('\t').append(createdAt).append('\t').append(severity);
+            for (String field : new String[]{playerUuid, playerName, actionType, command, details, serverName}) {
+                builder.append('\t');
+                if (field == null) {
+                    builder.append("\\0");
+                    continue;
+                }
+                for (int i = 0; i < field.length(); i++) {
+                    char c = field.charAt(i);
+                    if (c == '\\') {
+                        builder.append("\\\\");
+                    } else if (c == '\t') {
+                        builder.append("\\t");
+                    } else if (c == '\n') {
+                        builder.append("\\n");
+                    } else if (c == '\r') {
+                        builder.append("\\r");
+                    } else {
+                        builder.append(c);
+                    }
+                }
+            }
+            return builder.toString();
+        }
+
+        private static PendingRow decode(String line) {
+            String[] parts = line.split("\t", -1);
+            if (parts.length != 9) {
+                return null;
+            }
+            try {
+                String[] fields = new String[6];
+                for (int i = 0; i < 6; i++) {
+                    fields[i] = unescape(parts[i + 3]);
+                }
+                return new PendingRow(RowType.valueOf(parts[0]), fields[0], fields[1], fields[2],
+                        fields[3], fields[4], fields[5], Integer.parseInt(parts[2]), Long.parseLong(parts[1]));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+
+        private static String unescape(String value) {
+            if ("\\0".equals(value)) {
+                return null;
+            }
+            StringBuilder builder = new StringBuilder(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '\\' && i + 1 < value.length()) {
+                    char next = value.charAt(++i);
+                    builder.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+                } else {
+                    builder.append(c);
+                }
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -4,6 +4,7 @@ import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 import com.neohide.neohide.NeoHide;
+import com.neohide.neohide.util.SpyIndex;
 
 import java.util.*;
 
@@ -13,23 +14,30 @@ public class HideManager {
     private final ConfigManager configManager;
     private Set<UUID> hiddenPlayers; // Игроки, которые скрыты от других
     private Set<UUID> vanishedPlayers; // Игроки в ванише
-    private Map<UUID, Set<UUID>> spyTargets; // Кто за кем следит (шпион)
+    private final SpyIndex spyIndex; // Кто за кем следит (шпион) и кто следит за кем
     private Set<UUID> commandSpyEnabled; // Игроки с включенным шпионажем команд
+    private final PlayerStateJournal journal; // Изменения состояния, ожидающие записи в БД
+    private final Map<UUID, Integer> stateChanges = new HashMap<>(); // Счётчик изменений состояния за сессию
 
     public HideManager(JavaPlugin plugin) {
         this.plugin = plugin;
         this.configManager = ((NeoHide) plugin).getConfigManager();
         this.hiddenPlayers = new HashSet<>();
         this.vanishedPlayers = new HashSet<>();
-        this.spyTargets = new HashMap<>();
+        this.spyIndex = new SpyIndex();
         this.commandSpyEnabled = new HashSet<>();
-
-        loadData();
+        this.journal = new PlayerStateJournal((NeoHide) plugin);
     }
 
-    private void loadData() {
-        // Загрузка данных из файла
-        // В реальной реализации можно добавить загрузку из data.yml
+    /**
+     * Запустить запись изменений в БД и восстановить состояние уже онлайн игроков
+     * (после /reload). Вся таблица при этом не читается — только нужные игроки.
+     */
+    public void loadData() {
+        journal.start();
+        for (Player online : Bukkit.getOnlinePlayers()) {
+            restorePlayerState(online);
+        }
     }
 
     // ========== Скрытие игроков ==========
@@ -39,6 +47,7 @@ public class HideManager {
      */
     public void hidePlayer(Player player) {
         hiddenPlayers.add(player.getUniqueId());
+        recordState(player);
 
         // Скрываем игрока от всех
         for (Player online : Bukkit.getOnlinePlayers()) {
@@ -55,6 +64,7 @@ public class HideManager {
      */
     public void showPlayer(Player player) {
         hiddenPlayers.remove(player.getUniqueId());
+        recordState(player);
 
         // Показываем игрока всем
         for (Player online : Bukkit.getOnlinePlayers()) {
@@ -80,6 +90,7 @@ public class HideManager {
      */
     public void vanishPlayer(Player player) {
         vanishedPlayers.add(player.getUniqueId());
+        recordState(player);
         hidePlayer(player); // Также скрываем от других
 
         // Убираем из таба
@@ -101,6 +112,7 @@ public class HideManager {
      */
     public void unvanishPlayer(Player player) {
         vanishedPlayers.remove(player.getUniqueId());
+        recordState(player);
         showPlayer(player); // Показываем игрока
 
         // Возвращаем в список игроков
@@ -123,8 +135,7 @@ public class HideManager {
      * Включить шпионаж за игроком
      */
     public void addSpy(Player spy, Player target) {
-        spyTargets.computeIfAbsent(spy.getUniqueId(), k -> new HashSet<>())
-                .add(target.getUniqueId());
+        spyIndex.add(spy.getUniqueId(), target.getUniqueId());
 
         spy.sendMessage("§aТеперь вы следите за игроком " + target.getName());
         logAction(spy.getName() + " начал следить за " + target.getName());
@@ -134,13 +145,7 @@ public class HideManager {
      * Выключить шпионаж за игроком
      */
     public void removeSpy(Player spy, Player target) {
-        Set<UUID> targets = spyTargets.get(spy.getUniqueId());
-        if (targets != null) {
-            targets.remove(target.getUniqueId());
-            if (targets.isEmpty()) {
-                spyTargets.remove(spy.getUniqueId());
-            }
-        }
+        spyIndex.remove(spy.getUniqueId(), target.getUniqueId());
 
         spy.sendMessage("§aВы больше не следите за игроком " + target.getName());
     }
@@ -149,28 +154,30 @@ public class HideManager {
      * Проверка, следит ли игрок за целью
      */
     public boolean isSpyingOn(Player spy, Player target) {
-        Set<UUID> targets = spyTargets.get(spy.getUniqueId());
-        return targets != null && targets.contains(target.getUniqueId());
+        return spyIndex.contains(spy.getUniqueId(), target.getUniqueId());
     }
 
     /**
-     * Получить всех, за кем следит игрок
+     * Получить всех, за кем следит игрок (неизменяемое представление)
      */
     public Set<UUID> getSpyTargets(Player spy) {
-        return spyTargets.getOrDefault(spy.getUniqueId(), new HashSet<>());
+        return spyIndex.targetsOf(spy.getUniqueId());
     }
 
     /**
      * Получить всех, кто следит за игроком
      */
     public List<Player> getSpiesWatching(Player target) {
-        List<Player> spies = new ArrayList<>();
-        for (Map.Entry<UUID, Set<UUID>> entry : spyTargets.entrySet()) {
-            if (entry.getValue().contains(target.getUniqueId())) {
-                Player spy = Bukkit.getPlayer(entry.getKey());
-                if (spy != null) {
-                    spies.add(spy);
-                }
+        Set<UUID> spyIds = spyIndex.spiesOf(target.getUniqueId());
+        if (spyIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Player> spies = new ArrayList<>(spyIds.size());
+        for (UUID spyId : spyIds) {
+            Player spy = Bukkit.getPlayer(spyId);
+            if (spy != null) {
+                spies.add(spy);
             }
         }
         return spies;
@@ -183,6 +190,7 @@ public class HideManager {
      */
     public void enableCommandSpy(Player player) {
         commandSpyEnabled.add(player.getUniqueId());
+        recordState(player);
         player.sendMessage("§aШпионаж команд включен!");
     }
 
@@ -191,6 +199,7 @@ public class HideManager {
      */
     public void disableCommandSpy(Player player) {
         commandSpyEnabled.remove(player.getUniqueId());
+        recordState(player);
         player.sendMessage("§cШпионаж команд выключен!");
     }
 
@@ -249,9 +258,7 @@ public class HideManager {
      * Обновить список игроков для всех
      */
     public void updateAllPlayerLists() {
-        for (Player online : Bukkit.getOnlinePlayers()) {
-            updatePlayerListName(online);
-        }
+        ((NeoHide) plugin).getSliceScheduler().submitPlayers("player-lists", this::updatePlayerListName);
     }
 
     /**
@@ -271,6 +278,8 @@ public class HideManager {
      * Обработка входа игрока
      */
     public void onPlayerJoin(Player player) {
+        journal.playerJoined(player.getUniqueId());
+
         // Скрываем от игрока других скрытых игроков
         for (Player online : Bukkit.getOnlinePlayers()) {
             if (!online.equals(player) && !canSee(player, online)) {
@@ -289,22 +298,122 @@ public class HideManager {
 
         // Обновляем список
         updatePlayerListName(player);
+
+        // Сохранённое состояние подгружаем из БД только для этого игрока
+        restorePlayerState(player);
+    }
+
+    /**
+     * Асинхронно прочитать состояние игрока из БД и применить его в основном потоке
+     */
+    private void restorePlayerState(Player player) {
+        DatabaseManager databaseManager = ((NeoHide) plugin).getDatabaseManager();
+        if (databaseManager == null || !databaseManager.isConnected()) {
+            return;
+        }
+
+        UUID uuid = player.getUniqueId();
+        int changesAtJoin = stateChanges.getOrDefault(uuid, 0);
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            boolean hidden;
+            boolean vanished;
+            boolean commandSpy;
+
+            // Незаписанное состояние из журнала новее строки в БД (например, вышел сразу после /vanish)
+            DatabaseManager.PlayerState unsaved = journal.flushFor(uuid);
+            if (unsaved != null) {
+                hidden = unsaved.isHidden();
+                vanished = unsaved.isVanished();
+                commandSpy = unsaved.isCommandSpy();
+            } else {
+                Map<String, Object> data = databaseManager.getPlayerData(uuid);
+                if (data == null) {
+                    return;
+                }
+                hidden = Boolean.TRUE.equals(data.get("is_hidden"));
+                vanished = Boolean.TRUE.equals(data.get("is_vanished"));
+                commandSpy = Boolean.TRUE.equals(data.get("command_spy"));
+            }
+            if (!hidden && !vanished && !commandSpy) {
+                return;
+            }
+
+            Bukkit.getScheduler().runTask(plugin,
+                    () -> applyRestoredState(player, changesAtJoin, hidden, vanished, commandSpy));
+        });
+    }
+
+    private void applyRestoredState(Player player, int changesAtJoin,
+                                    boolean hidden, boolean vanished, boolean commandSpy) {
+        if (!player.isOnline()) {
+            return;
+        }
+
+        // Игрок уже сам поменял состояние после входа — сохранённое устарело
+        UUID uuid = player.getUniqueId();
+        if (stateChanges.getOrDefault(uuid, 0) != changesAtJoin) {
+            return;
+        }
+
+        if (vanished) {
+            vanishedPlayers.add(uuid);
+        }
+        if (hidden || vanished) {
+            hiddenPlayers.add(uuid);
+            for (Player online : Bukkit.getOnlinePlayers()) {
+                if (!online.equals(player) && !canSee(online, player)) {
+                    online.hidePlayer(plugin, player);
+                }
+            }
+        }
+        if (commandSpy) {
+            commandSpyEnabled.add(uuid);
+        }
+
+        updatePlayerListName(player);
+        logAction(player.getName() + ": состояние восстановлено из БД");
+    }
+
+    /**
+     * Записать текущее состояние игрока в журнал для сохранения в БД
+     */
+    private void recordState(Player player) {
+        stateChanges.merge(player.getUniqueId(), 1, Integer::sum);
+        journal.record(new DatabaseManager.PlayerState(
+                player.getUniqueId(),
+                player.getName(),
+                isPlayerHidden(player),
+                isVanished(player),
+                hasCommandSpyEnabled(player)));
+
+        LiveEventBus eventBus = ((NeoHide) plugin).getEventBus();
+        if (eventBus.hasSubscribers()) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("player", player.getName());
+            data.put("uuid", player.getUniqueId().toString());
+            data.put("hidden", isPlayerHidden(player));
+            data.put("vanished", isVanished(player));
+            data.put("command_spy", hasCommandSpyEnabled(player));
+            data.put("vanished_total", vanishedPlayers.size());
+            eventBus.publish("player_state", data);
+        }
     }
 
     /**
      * Обработка выхода игрока
      */
     public void onPlayerQuit(Player player) {
+        // Состояние в БД не трогаем — оно восстановится при следующем входе
         UUID uuid = player.getUniqueId();
         hiddenPlayers.remove(uuid);
         vanishedPlayers.remove(uuid);
         commandSpyEnabled.remove(uuid);
+        stateChanges.remove(uuid);
+        // Последнее сохранённое состояние забудется после записи журнала
+        journal.playerLeft(uuid);
 
         // Убираем из шпионажа
-        spyTargets.remove(uuid);
-        for (Set<UUID> targets : spyTargets.values()) {
-            targets.remove(uuid);
-        }
+        spyIndex.removePlayer(uuid);
     }
 
     /**
@@ -355,11 +464,12 @@ public class HideManager {
     public void clearAll() {
         hiddenPlayers.clear();
         vanishedPlayers.clear();
-        spyTargets.clear();
+        spyIndex.clear();
         commandSpyEnabled.clear();
 
         // Показать всех игроков
         for (Player online : Bukkit.getOnlinePlayers()) {
+            recordState(online);
             for (Player other : Bukkit.getOnlinePlayers()) {
                 online.showPlayer(plugin, other);
             }
@@ -377,9 +487,9 @@ public class HideManager {
     }
 
     /**
-     * Сохранить данные
+     * Сохранить данные: дописать в БД всё, что накопилось в журнале
      */
     public void saveData() {
-        // В реальной реализации можно добавить сохранение в data.yml
+        journal.stop();
     }
 }
\ No newline at end of file
@@ -0,0 +1,148 @@
+package com.neohide.neohide.managers;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Шина событий для живой ленты веб-панели (SSE).
+ *
+ * Публикация не блокирует: событие кладётся в ограниченный буфер каждого
+ * подписчика. Подписчик, который не успевает разбирать буфер, отключается —
+ * панель переподключится и перечитает состояние целиком.
+ */
+public class LiveEventBus {
+
+    /**
+     * Событие ленты. Данные не изменяются после публикации.
+     */
+    public static final class Event {
+        private final long id;
+        private final String type;
+        private final long timestamp;
+        private final Map<String, Object> data;
+
+        private Event(long id, String type, Map<String, Object> data) {
+            this.id = id;
+            this.type = type;
+            this.timestamp = System.currentTimeMillis();
+            this.data = Collections.unmodifiableMap(data);
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public Map<String, Object> getData() {
+            return data;
+        }
+    }
+
+    /**
+     * Подписка с собственным ограниченным буфером
+     */
+    public final class Subscription implements AutoCloseable {
+        private final BlockingQueue<Event> buffer;
+        private volatile boolean closed;
+        private volatile boolean overflowed;
+
+        private Subscription(int bufferSize) {
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        /**
+         * Следующее событие или null, если за timeout ничего не пришло
+         */
+        public Event poll(long timeout, TimeUnit unit) throws InterruptedException {
+            return buffer.poll(timeout, unit);
+        }
+
+        public boolean isClosed() {
+            return closed;
+        }
+
+        /**
+         * Подписка отключена из-за переполнения буфера
+         */
+        public boolean isOverflowed() {
+            return overflowed;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            subscribers.remove(this);
+        }
+
+        private void offer(Event event) {
+            if (!buffer.offer(event)) {
+                overflowed = true;
+                droppedSubscribers.increment();
+                close();
+            }
+        }
+    }
+
+    private final Set<Subscription> subscribers = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sequence = new AtomicLong();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder droppedSubscribers = new LongAdder();
+
+    public Subscription subscribe(int bufferSize) {
+        Subscription subscription = new Subscription(Math.max(1, bufferSize));
+        subscribers.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Есть ли кому отправлять. Позволяет не собирать данные события впустую.
+     */
+    public boolean hasSubscribers() {
+        return !subscribers.isEmpty();
+    }
+
+    public void publish(String type, Map<String, Object> data) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+
+        Event event = new Event(sequence.incrementAndGet(), type, data);
+        published.increment();
+        for (Subscription subscription : subscribers) {
+            subscription.offer(event);
+        }
+    }
+
+    /**
+     * Отключить всех подписчиков (остановка веб-сервера)
+     */
+    public void closeAll() {
+        for (Subscription subscription : subscribers) {
+            subscription.close();
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("subscribers", subscribers.size());
+        stats.put("published", published.sum());
+        stats.put("dropped_subscribers", droppedSubscribers.sum());
+        return stats;
+    }
+}
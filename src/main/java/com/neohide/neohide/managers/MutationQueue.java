@@ -0,0 +1,160 @@
+package com.neohide.neohide.managers;
+
+import org.bukkit.Bukkit;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Очередь изменений, которые должны выполняться в основном потоке сервера.
+ *
+ * Изменения из других потоков (веб-API) копятся в очереди и применяются одной
+ * пачкой в ближайшем тике — не чаще одной пачки за тик. Завершающие действия
+ * (например, повторное скрытие команд в карте Bukkit) выполняются один раз на
+ * пачку, сколько бы изменений их ни запросили. Future завершается уже после
+ * них, поэтому ответ вызывающему отражает применённое состояние.
+ */
+public class MutationQueue {
+
+    private final JavaPlugin plugin;
+    private final Queue<Mutation<?>> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong mutations = new AtomicLong();
+    private volatile int lastBatchSize;
+    private volatile int maxBatchSize;
+
+    public MutationQueue(JavaPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Выполнить изменение в основном потоке.
+     *
+     * @param finishers действия, которые нужно выполнить после всей пачки (одинаковые объединяются)
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> action, Runnable... finishers) {
+        Mutation<T> mutation = new Mutation<>(action, finishers);
+
+        // Уже в основном потоке — пачка из одного изменения
+        if (Bukkit.isPrimaryThread()) {
+            applyBatch(Collections.singletonList(mutation));
+            return mutation.future;
+        }
+
+        pending.add(mutation);
+        scheduleDrain();
+        return mutation.future;
+    }
+
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            try {
+                plugin.getServer().getScheduler().runTask(plugin, this::drain);
+            } catch (IllegalStateException e) {
+                // Плагин выключается — задачи больше не принимаются
+                drainScheduled.set(false);
+                failPending(e);
+            }
+        }
+    }
+
+    private void drain() {
+        drainScheduled.set(false);
+
+        List<Mutation<?>> batch = new ArrayList<>();
+        Mutation<?> mutation;
+        while ((mutation = pending.poll()) != null) {
+            batch.add(mutation);
+        }
+        if (!batch.isEmpty()) {
+            applyBatch(batch);
+        }
+    }
+
+    private void applyBatch(List<Mutation<?>> batch) {
+        Set<Runnable> finishers = new LinkedHashSet<>();
+        for (Mutation<?> mutation : batch) {
+            mutation.apply();
+            Collections.addAll(finishers, mutation.finishers);
+        }
+
+        for (Runnable finisher : finishers) {
+            try {
+                finisher.run();
+            } catch (Exception e) {
+                plugin.getLogger().warning("Ошибка применения изменений: " + e.getMessage());
+            }
+        }
+
+        for (Mutation<?> mutation : batch) {
+            mutation.complete();
+        }
+
+        batches.incrementAndGet();
+        mutations.addAndGet(batch.size());
+        lastBatchSize = batch.size();
+        if (batch.size() > maxBatchSize) {
+            maxBatchSize = batch.size();
+        }
+    }
+
+    /**
+     * Выполнить оставшееся при выключении плагина (вызывается из основного потока)
+     */
+    public void shutdown() {
+        drain();
+    }
+
+    private void failPending(Exception cause) {
+        Mutation<?> mutation;
+        while ((mutation = pending.poll()) != null) {
+            mutation.future.completeExceptionally(cause);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("pending", pending.size());
+        stats.put("batches", batches.get());
+        stats.put("mutations", mutations.get());
+        stats.put("last_batch_size", lastBatchSize);
+        stats.put("max_batch_size", maxBatchSize);
+        return stats;
+    }
+
+    private static final class Mutation<T> {
+        private final Callable<T> action;
+        private final Runnable[] finishers;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private T result;
+        private Exception error;
+
+        private Mutation(Callable<T> action, Runnable[] finishers) {
+            this.action = action;
+            this.finishers = finishers;
+        }
+
+        private void apply() {
+            try {
+                result = action.call();
+            } catch (Exception e) {
+                error = e;
+            }
+        }
+
+        private void complete() {
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+}
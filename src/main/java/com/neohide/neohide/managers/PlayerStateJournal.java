@@ -0,0 +1,126 @@
+package com.neohide.neohide.managers;
+
+import com.neohide.neohide.NeoHide;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Журнал изменений состояния игроков (скрытие, ваниш, шпионаж команд).
+ *
+ * HideManager записывает сюда каждое изменение, асинхронная задача раз в
+ * несколько тиков сбрасывает накопленное в БД одной транзакцией.
+ * Несколько изменений одного игрока между сбросами схлопываются в последнее.
+ */
+public class PlayerStateJournal {
+
+    // 5 тиков = 250 мс между сбросами
+    private static final long FLUSH_PERIOD_TICKS = 5L;
+
+    private final NeoHide plugin;
+    private final Map<UUID, DatabaseManager.PlayerState> pending = new ConcurrentHashMap<>();
+    // Вышедшие игроки: после записи их последнего состояния DatabaseManager забывает его
+    private final Set<UUID> departed = ConcurrentHashMap.newKeySet();
+    private BukkitTask flushTask;
+
+    public PlayerStateJournal(NeoHide plugin) {
+        this.plugin = plugin;
+    }
+
+    public void start() {
+        if (flushTask == null) {
+            flushTask = plugin.getServer().getScheduler()
+                    .runTaskTimerAsynchronously(plugin, this::flush, FLUSH_PERIOD_TICKS, FLUSH_PERIOD_TICKS);
+        }
+    }
+
+    /**
+     * Остановить сброс по таймеру и дописать остаток в текущем потоке
+     */
+    public void stop() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        flush();
+    }
+
+    /**
+     * Записать новое состояние игрока
+     */
+    public void record(DatabaseManager.PlayerState state) {
+        pending.put(state.getUuid(), state);
+    }
+
+    /**
+     * Дописать журнал и вернуть состояние игрока, которое записать не удалось
+     * (БД недоступна), или null, если в БД уже самое свежее состояние.
+     * Ждёт сброс, идущий в другом потоке, поэтому вызывается только асинхронно.
+     */
+    public synchronized DatabaseManager.PlayerState flushFor(UUID uuid) {
+        flush();
+        return pending.get(uuid);
+    }
+
+    /**
+     * Игрок вышел: после записи его изменений забыть последнее сохранённое состояние
+     */
+    public void playerLeft(UUID uuid) {
+        departed.add(uuid);
+    }
+
+    /**
+     * Игрок снова вошёл, пока выход ещё не обработан
+     */
+    public void playerJoined(UUID uuid) {
+        departed.remove(uuid);
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Сбросить накопленные изменения в БД
+     */
+    public synchronized void flush() {
+        if (pending.isEmpty() && departed.isEmpty()) {
+            return;
+        }
+
+        DatabaseManager databaseManager = plugin.getDatabaseManager();
+        if (databaseManager == null || !databaseManager.isConnected()) {
+            return;
+        }
+
+        if (!pending.isEmpty()) {
+            writePending(databaseManager);
+        }
+
+        // Восстановление при входе ждёт этот сброс (flushFor), поэтому не прочитает
+        // состояние игрока раньше, чем оно будет забыто здесь
+        for (UUID uuid : new ArrayList<>(departed)) {
+            if (!pending.containsKey(uuid) && departed.remove(uuid)) {
+                databaseManager.forgetPlayerState(uuid);
+            }
+        }
+    }
+
+    private void writePending(DatabaseManager databaseManager) {
+        List<DatabaseManager.PlayerState> batch = new ArrayList<>(pending.size());
+        for (UUID uuid : new ArrayList<>(pending.keySet())) {
+            DatabaseManager.PlayerState state = pending.remove(uuid);
+            if (state != null) {
+                batch.add(state);
+            }
+        }
+
+        if (databaseManager.savePlayerStates(batch) < 0) {
+            // Не удалось записать — возвращаем, если за это время не пришло более новое состояние
+            for (DatabaseManager.PlayerState state : batch) {
+                pending.putIfAbsent(state.getUuid(), state);
+            }
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.neohide.neohide.managers;
+
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Выполнение массовой работы в основном потоке кусками с бюджетом времени на тик.
+ *
+ * Каждый проход (sweep) — курсор по заранее снятому списку элементов. За тик
+ * обрабатывается столько элементов, сколько помещается в бюджет, остальное
+ * продолжается в следующем тике. Каждый активный проход получает хотя бы один
+ * элемент за тик, а первым в тике проходы идут по очереди, поэтому длинный
+ * проход не забирает весь бюджет у остальных. Повторный запуск прохода с тем же именем
+ * начинает его заново, а не ставит второй в очередь.
+ *
+ * Все методы, кроме getStats, вызываются из основного потока; статистика
+ * публикуется готовым снимком и читается из любого потока.
+ */
+public class TimeSlicedScheduler {
+
+    private final JavaPlugin plugin;
+    private final long budgetNanos;
+    private final Map<String, Sweep<?>> active = new LinkedHashMap<>();
+    private final Map<String, Map<String, Object>> completed = new LinkedHashMap<>();
+    private BukkitTask task;
+    private volatile Map<String, Object> stats = Collections.emptyMap();
+
+    public TimeSlicedScheduler(JavaPlugin plugin, long budgetMicros) {
+        this.plugin = plugin;
+        this.budgetNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(1, budgetMicros));
+    }
+
+    public void start() {
+        if (task == null) {
+            task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::tick, 1L, 1L);
+        }
+    }
+
+    /**
+     * Запустить проход по элементам (список копируется)
+     */
+    public <T> void submit(String name, Collection<? extends T> items, Consumer<? super T> action) {
+        active.remove(name);
+        active.put(name, new Sweep<T>(name, new ArrayList<>(items), action));
+        publishStats();
+    }
+
+    /**
+     * Проход по игрокам онлайн на момент запуска; вышедшие к своей очереди пропускаются
+     */
+    public void submitPlayers(String name, Consumer<Player> action) {
+        List<UUID> players = new ArrayList<>();
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            players.add(player.getUniqueId());
+        }
+        submit(name, players, uuid -> {
+            Player player = Bukkit.getPlayer(uuid);
+            if (player != null) {
+                action.accept(player);
+            }
+        });
+    }
+
+    public boolean isRunning(String name) {
+        return active.containsKey(name);
+    }
+
+    private void tick() {
+        if (active.isEmpty()) {
+            return;
+        }
+
+        long deadline = System.nanoTime() + budgetNanos;
+        List<Sweep<?>> sweeps = new ArrayList<>(active.values());
+        for (Sweep<?> sweep : sweeps) {
+            // Проход мог быть перезапущен действием другого прохода в этом же тике
+            if (active.get(sweep.name) != sweep) {
+                continue;
+            }
+            // После дедлайна проход всё равно делает свой один элемент
+            sweep.run(deadline);
+            if (sweep.isDone() && active.remove(sweep.name, sweep)) {
+                completed.put(sweep.name, sweep.toMap());
+            }
+        }
+
+        // Тот, кто начинал этот тик, в следующем идёт последним
+        Sweep<?> first = sweeps.get(0);
+        if (active.remove(first.name, first)) {
+            active.put(first.name, first);
+        }
+        publishStats();
+    }
+
+    /**
+     * Доделать всё без бюджета (выключение плагина)
+     */
+    public void shutdown() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        for (Sweep<?> sweep : active.values()) {
+            sweep.run(Long.MAX_VALUE);
+        }
+        active.clear();
+    }
+
+    public Map<String, Object> getStats() {
+        return stats;
+    }
+
+    private void publishStats() {
+        List<Map<String, Object>> running = new ArrayList<>();
+        for (Sweep<?> sweep : active.values()) {
+            running.add(sweep.toMap());
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("budget_micros", TimeUnit.NANOSECONDS.toMicros(budgetNanos));
+        stats.put("active", running);
+        stats.put("completed", new ArrayList<>(completed.values()));
+        this.stats = stats;
+    }
+
+    private final class Sweep<T> {
+        private final String name;
+        private final List<T> items;
+        private final Consumer<? super T> action;
+        private final long startedAt = System.currentTimeMillis();
+        private int cursor;
+        private int ticks;
+        private long busyNanos;
+        private long finishedAt;
+
+        private Sweep(String name, List<T> items, Consumer<? super T> action) {
+            this.name = name;
+            this.items = items;
+            this.action = action;
+        }
+
+        // Хотя бы один элемент за тик, чтобы проход всегда продвигался
+        private void run(long deadline) {
+            long start = System.nanoTime();
+            long now = start;
+            do {
+                if (cursor >= items.size()) {
+                    break;
+                }
+                T item = items.get(cursor++);
+                try {
+                    action.accept(item);
+                } catch (Exception e) {
+                    plugin.getLogger().warning("Ошибка в проходе " + name + ": " + e.getMessage());
+                }
+                now = System.nanoTime();
+            } while (now < deadline);
+
+            ticks++;
+            busyNanos += now - start;
+            if (isDone()) {
+                finishedAt = System.currentTimeMillis();
+            }
+        }
+
+        private boolean isDone() {
+            return cursor >= items.size();
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("name", name);
+            map.put("processed", cursor);
+            map.put("total", items.size());
+            map.put("progress", items.isEmpty() ? 100.0 : cursor * 100.0 / items.size());
+            map.put("ticks", ticks);
+            map.put("busy_ms", busyNanos / 1_000_000.0);
+            map.put("duration_ms", (finishedAt > 0 ? finishedAt : System.currentTimeMillis()) - startedAt);
+            map.put("started_at", new Date(startedAt));
+            return map;
+        }
+    }
+}
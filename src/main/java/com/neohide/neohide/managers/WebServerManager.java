@@ -2,20 +2,51 @@ package com.neohide.neohide.managers;
 
 import com.neohide.neohide.NeoHide;
 import com.neohide.neohide.managers.ConfigManager;
+import com.neohide.neohide.util.CommandVerdictCache;
+import com.neohide.neohide.util.JsonWriter;
+import com.neohide.neohide.util.LatencyHistogram;
+import com.neohide.neohide.util.StaticAsset;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PrintWriter;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Level;
 
 public class WebServerManager {
 
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final long MUTATION_TIMEOUT_SECONDS = 5;
+    private static final String[] EXPORT_COLUMNS = {
+            "id", "created_at", "player_uuid", "player_name", "action_type", "command", "details", "server_name"
+    };
+
     private final NeoHide plugin;
     private com.sun.net.httpserver.HttpServer server;
-    private boolean running = false;
+    private volatile boolean running = false;
+
+    // Потоки обработки запросов и ограничение одновременных запросов
+    private ExecutorService executor;
+    private String executorMode;
+    private int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder shedRequests = new LongAdder();
+
+    // Запрос, не прошедший ограничение, выполняется в потоке диспетчера и сразу получает 503
+    private static final ThreadLocal<Boolean> SHEDDING = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    // Гистограммы задержек по эндпоинтам
+    private final Map<String, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+
+    // Потоки, обслуживающие подключения к /api/events
+    private static final long EVENT_HEARTBEAT_SECONDS = 15;
+    private final Set<Thread> eventStreams = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger eventStreamCounter = new AtomicInteger();
 
     public WebServerManager(NeoHide plugin) {
         this.plugin = plugin;
@@ -38,16 +69,18 @@ public class WebServerManager {
             );
 
             // API эндпоинты
-            server.createContext("/api", new ApiHandler());
+            server.createContext("/api", new InstrumentedHandler(new ApiHandler(), true));
 
             // Статические файлы
-            server.createContext("/", new StaticHandler());
+            server.createContext("/", new InstrumentedHandler(new StaticHandler(loadAssets()), false));
 
-            server.setExecutor(null);
+            createExecutor(config);
+            server.setExecutor(new RequestExecutor());
             server.start();
 
             running = true;
-            plugin.getLogger().info("Веб-интерфейс запущен на порту " + port);
+            plugin.getLogger().info("Веб-интерфейс запущен на порту " + port
+                    + " (" + executorMode + ", до " + maxInFlight + " запросов)");
             plugin.getLogger().info("Доступ: http://localhost:" + port);
 
         } catch (Exception e) {
@@ -59,6 +92,14 @@ public class WebServerManager {
         if (server != null) {
             server.stop(0);
         }
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+        plugin.getEventBus().closeAll();
+        for (Thread thread : eventStreams) {
+            thread.interrupt();
+        }
         running = false;
         plugin.getLogger().info("Веб-интерфейс остановлен");
     }
@@ -67,6 +108,212 @@ public class WebServerManager {
         return running;
     }
 
+    /**
+     * Загрузить файлы панели из web/ в ресурсах плагина
+     */
+    private Map<String, StaticAsset> loadAssets() throws IOException {
+        Map<String, StaticAsset> assets = new HashMap<>();
+        assets.put("/index.html", loadAsset("web/index.html", "text/html; charset=UTF-8"));
+        assets.put("/style.css", loadAsset("web/style.css", "text/css; charset=UTF-8"));
+        assets.put("/app.js", loadAsset("web/app.js", "application/javascript; charset=UTF-8"));
+        return Collections.unmodifiableMap(assets);
+    }
+
+    private StaticAsset loadAsset(String resource, String contentType) throws IOException {
+        java.io.InputStream in = plugin.getResource(resource);
+        if (in == null) {
+            throw new IOException("Ресурс не найден: " + resource);
+        }
+        return StaticAsset.load(in, contentType);
+    }
+
+    private void createExecutor(ConfigManager config) {
+        int threads = config.getWebExecutorThreads();
+        maxInFlight = threads + config.getWebExecutorQueueSize();
+
+        if ("VIRTUAL".equals(config.getWebExecutorMode())) {
+            executor = createVirtualThreadExecutor();
+            if (executor != null) {
+                executorMode = "VIRTUAL";
+                return;
+            }
+            plugin.getLogger().warning("Виртуальные потоки недоступны (нужна Java 21+), используется пул потоков");
+        }
+
+        AtomicInteger counter = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "NeoHide-Web-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        executor = pool;
+        executorMode = "POOL";
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() через рефлексию: плагин собирается под Java 10
+     */
+    private ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Метрики веб-сервера: исполнитель и задержки по эндпоинтам
+     */
+    public Map<String, Object> getMetrics() {
+        Map<String, Object> executorStats = new LinkedHashMap<>();
+        executorStats.put("mode", executorMode);
+        executorStats.put("max_in_flight", maxInFlight);
+        executorStats.put("in_flight", inFlight.get());
+        executorStats.put("shed_total", shedRequests.sum());
+
+        Map<String, Object> endpoints = new TreeMap<>();
+        for (Map.Entry<String, LatencyHistogram> entry : latencies.entrySet()) {
+            endpoints.put(entry.getKey(), entry.getValue().snapshot());
+        }
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("executor", executorStats);
+        metrics.put("endpoints", endpoints);
+        return metrics;
+    }
+
+    /**
+     * Отправлять события подписки в формате text/event-stream, пока клиент
+     * подключён. Без событий раз в EVENT_HEARTBEAT_SECONDS уходит комментарий —
+     * так обнаруживаются оборванные соединения.
+     */
+    private void streamEvents(com.sun.net.httpserver.HttpExchange exchange, LiveEventBus.Subscription subscription) {
+        try (OutputStream os = exchange.getResponseBody()) {
+            JsonWriter json = new JsonWriter(os);
+            os.write("retry: 5000\n\n".getBytes(StandardCharsets.UTF_8));
+            os.flush();
+
+            while (running && !subscription.isClosed()) {
+                LiveEventBus.Event event = subscription.poll(EVENT_HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+                if (event == null) {
+                    os.write(": ping\n\n".getBytes(StandardCharsets.UTF_8));
+                    os.flush();
+                    continue;
+                }
+
+                Map<String, Object> data = new LinkedHashMap<>(event.getData());
+                data.put("timestamp", event.getTimestamp());
+
+                os.write(("id: " + event.getId() + "\nevent: " + event.getType() + "\ndata: ")
+                        .getBytes(StandardCharsets.UTF_8));
+                json.write(data).flush();
+                os.write("\n\n".getBytes(StandardCharsets.UTF_8));
+                os.flush();
+            }
+
+            if (subscription.isOverflowed()) {
+                // Клиент не успевал читать — пусть переподключится и перечитает состояние
+                os.write("event: overflow\ndata: {}\n\n".getBytes(StandardCharsets.UTF_8));
+                os.flush();
+            }
+        } catch (IOException | InterruptedException e) {
+            // Клиент отключился или сервер останавливается
+        } finally {
+            subscription.close();
+            eventStreams.remove(Thread.currentThread());
+            exchange.close();
+        }
+    }
+
+    // ========== Executor ==========
+    /**
+     * Передаёт запросы в пул, пока одновременно обрабатывается не больше maxInFlight.
+     * Лишние запросы не ставятся в очередь, а сразу получают 503.
+     */
+    private class RequestExecutor implements Executor {
+        @Override
+        public void execute(Runnable task) {
+            ExecutorService current = executor;
+            if (current != null && inFlight.incrementAndGet() <= maxInFlight) {
+                try {
+                    current.execute(() -> {
+                        try {
+                            task.run();
+                        } finally {
+                            inFlight.decrementAndGet();
+                        }
+                    });
+                    return;
+                } catch (RejectedExecutionException e) {
+                    // Исполнитель уже остановлен — отвечаем 503 ниже
+                }
+            }
+            inFlight.decrementAndGet();
+
+            shedRequests.increment();
+            SHEDDING.set(Boolean.TRUE);
+            try {
+                task.run();
+            } finally {
+                SHEDDING.set(Boolean.FALSE);
+            }
+        }
+    }
+
+    // ========== Instrumented Handler ==========
+    /**
+     * Отклоняет запросы сверх лимита и записывает время обработки в гистограмму эндпоинта
+     */
+    private class InstrumentedHandler implements com.sun.net.httpserver.HttpHandler {
+        private final com.sun.net.httpserver.HttpHandler delegate;
+        private final boolean api;
+
+        InstrumentedHandler(com.sun.net.httpserver.HttpHandler delegate, boolean api) {
+            this.delegate = delegate;
+            this.api = api;
+        }
+
+        @Override
+        public void handle(com.sun.net.httpserver.HttpExchange exchange) throws IOException {
+            if (SHEDDING.get()) {
+                byte[] responseBytes = "{\"error\":true,\"code\":503,\"message\":\"Сервер перегружен\"}"
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                exchange.sendResponseHeaders(503, responseBytes.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(responseBytes);
+                }
+                return;
+            }
+
+            long started = System.nanoTime();
+            try {
+                delegate.handle(exchange);
+            } finally {
+                latencies.computeIfAbsent(endpointKey(exchange), k -> new LatencyHistogram())
+                        .record(System.nanoTime() - started);
+            }
+        }
+
+        // Неизвестные пути сводятся в один ключ, чтобы не плодить гистограммы
+        private String endpointKey(com.sun.net.httpserver.HttpExchange exchange) {
+            int code = exchange.getResponseCode();
+            if (code == 404) {
+                return "not_found";
+            }
+            if (code == 401) {
+                return "unauthorized";
+            }
+            if (code == 405) {
+                return "method_not_allowed";
+            }
+            return api ? exchange.getRequestURI().getPath() : "static";
+        }
+    }
+
     // ========== API Handler ==========
     private class ApiHandler implements com.sun.net.httpserver.HttpHandler {
         @Override
@@ -74,16 +321,20 @@ public class WebServerManager {
             ConfigManager config = plugin.getConfigManager();
             String authToken = config.getWebAuthToken();
 
-            // Проверка авторизации
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+
+            // Проверка авторизации. EventSource в браузере не умеет ставить заголовки,
+            // поэтому для /api/events токен принимается и в параметре token
             String token = exchange.getRequestHeaders().getFirst("X-Auth-Token");
+            if (token == null && "/api/events".equals(path)) {
+                token = parseQuery(exchange.getRequestURI().getRawQuery()).get("token");
+            }
             if (token == null || !token.equals(authToken)) {
                 sendError(exchange, 401, "Неавторизованный доступ");
                 return;
             }
 
-            String method = exchange.getRequestMethod();
-            String path = exchange.getRequestURI().getPath();
-
             try {
                 if ("GET".equals(method)) {
                     handleGet(exchange, path);
@@ -93,8 +344,13 @@ public class WebServerManager {
                     sendError(exchange, 405, "Метод не поддерживается");
                 }
             } catch (Exception e) {
-                sendError(exchange, 500, "Внутренняя ошибка сервера: " + e.getMessage());
                 plugin.getLogger().log(Level.WARNING, "Ошибка API: " + e.getMessage(), e);
+                if (exchange.getResponseCode() == -1) {
+                    sendError(exchange, 500, "Внутренняя ошибка сервера: " + e.getMessage());
+                } else {
+                    // Заголовки уже отправлены — ответ оборван, остаётся только закрыть обмен
+                    exchange.close();
+                }
             }
         }
 
@@ -106,6 +362,21 @@ public class WebServerManager {
                 stats.put("online_players", plugin.getServer().getOnlinePlayers().size());
                 stats.put("vanished_players", plugin.getHideManager().getVanishedPlayers().size());
 
+                CommandVerdictCache verdictCache = plugin.getConfigManager().getVerdictCache();
+                stats.put("verdict_cache_hits", verdictCache.getHits());
+                stats.put("verdict_cache_misses", verdictCache.getMisses());
+                stats.put("verdict_cache_evictions", verdictCache.getEvictions());
+
+                // Счётчики БД из памяти — запрос не ходит в базу
+                stats.put("database", plugin.getDatabaseManager().getStatistics());
+
+                DatabaseWriteQueue writeQueue = plugin.getDatabaseManager().getWriteQueue();
+                if (writeQueue != null) {
+                    for (Map.Entry<String, Object> entry : writeQueue.getStats().entrySet()) {
+                        stats.put("write_queue_" + entry.getKey(), entry.getValue());
+                    }
+                }
+
                 sendJson(exchange, stats);
 
             } else if ("/api/commands".equals(path)) {
@@ -113,6 +384,46 @@ public class WebServerManager {
                 List<String> commands = plugin.getCommandManager().getHiddenCommands();
                 sendJson(exchange, commands);
 
+            } else if ("/api/logs/export".equals(path)) {
+                // Потоковая выгрузка логов: ?format=ndjson|csv&from=&to=&player=&action=
+                exportLogs(exchange);
+
+            } else if ("/api/logs".equals(path) || "/api/violations".equals(path)) {
+                // Постраничная выборка по курсору: ?limit=50&cursor=<next_cursor из прошлого ответа>
+                Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+                int limit = parseLimit(query.get("limit"));
+                String cursorParam = query.get("cursor");
+                DatabaseManager.Cursor cursor = DatabaseManager.Cursor.decode(cursorParam);
+                if (cursorParam != null && !cursorParam.isEmpty() && cursor == null) {
+                    sendError(exchange, 400, "Некорректный курсор");
+                    return;
+                }
+
+                DatabaseManager databaseManager = plugin.getDatabaseManager();
+                List<Map<String, Object>> rows = "/api/logs".equals(path)
+                        ? databaseManager.getLogs(cursor, limit)
+                        : databaseManager.getActiveViolations(cursor, limit);
+
+                Map<String, Object> page = new HashMap<>();
+                page.put("items", rows);
+                DatabaseManager.Cursor next = rows.size() == limit
+                        ? DatabaseManager.Cursor.of(rows.get(rows.size() - 1)) : null;
+                page.put("next_cursor", next != null ? next.encode() : null);
+
+                sendJson(exchange, page);
+
+            } else if ("/api/events".equals(path)) {
+                // Живая лента событий (Server-Sent Events)
+                openEventStream(exchange);
+
+            } else if ("/api/metrics".equals(path)) {
+                // Задержки эндпоинтов, состояние исполнителя и ленты событий
+                Map<String, Object> metrics = getMetrics();
+                metrics.put("events", plugin.getEventBus().getStats());
+                metrics.put("mutations", plugin.getMutationQueue().getStats());
+                metrics.put("sweeps", plugin.getSliceScheduler().getStats());
+                sendJson(exchange, metrics);
+
             } else if ("/api/status".equals(path)) {
                 // Статус плагина
                 ConfigManager config = plugin.getConfigManager();
@@ -138,8 +449,10 @@ public class WebServerManager {
             if ("/api/hide".equals(path)) {
                 String command = params.get("command");
                 if (command != null && !command.isEmpty()) {
-                    plugin.getCommandManager().addHiddenCommand(command);
-                    sendSuccess(exchange, "Команда скрыта: " + command);
+                    Boolean added = awaitMutation(exchange, plugin.getCommandManager().addHiddenCommandAsync(command));
+                    if (added != null) {
+                        sendSuccess(exchange, (added ? "Команда скрыта: " : "Команда уже скрыта: ") + command);
+                    }
                 } else {
                     sendError(exchange, 400, "Требуется параметр command");
                 }
@@ -147,8 +460,10 @@ public class WebServerManager {
             } else if ("/api/unhide".equals(path)) {
                 String command = params.get("command");
                 if (command != null && !command.isEmpty()) {
-                    plugin.getCommandManager().removeHiddenCommand(command);
-                    sendSuccess(exchange, "Команда показана: " + command);
+                    Boolean removed = awaitMutation(exchange, plugin.getCommandManager().removeHiddenCommandAsync(command));
+                    if (removed != null) {
+                        sendSuccess(exchange, (removed ? "Команда показана: " : "Команда не была скрыта: ") + command);
+                    }
                 } else {
                     sendError(exchange, 400, "Требуется параметр command");
                 }
@@ -157,8 +472,14 @@ public class WebServerManager {
                 String enabledStr = params.get("enabled");
                 if (enabledStr != null) {
                     boolean enabled = "true".equalsIgnoreCase(enabledStr);
-                    plugin.getConfigManager().setHideCommandsEnabled(enabled);
-                    sendSuccess(exchange, "Защита " + (enabled ? "включена" : "выключена"));
+                    ConfigManager config = plugin.getConfigManager();
+                    Boolean applied = awaitMutation(exchange, plugin.getMutationQueue().submit(() -> {
+                        config.setHideCommandsEnabled(enabled);
+                        return config.isHideCommandsEnabled();
+                    }));
+                    if (applied != null) {
+                        sendSuccess(exchange, "Защита " + (applied ? "включена" : "выключена"));
+                    }
                 } else {
                     sendError(exchange, 400, "Требуется параметр enabled");
                 }
@@ -168,6 +489,143 @@ public class WebServerManager {
             }
         }
 
+        /**
+         * Дождаться применения изменения в основном потоке.
+         * При ошибке или таймауте ответ уже отправлен и возвращается null.
+         */
+        private <T> T awaitMutation(com.sun.net.httpserver.HttpExchange exchange, CompletableFuture<T> future) throws IOException {
+            try {
+                return future.get(MUTATION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                // Изменение останется в очереди и применится, когда сервер освободится
+                sendError(exchange, 504, "Сервер не успел применить изменение");
+            } catch (ExecutionException e) {
+                sendError(exchange, 500, "Не удалось применить изменение: " + e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                sendError(exchange, 503, "Запрос прерван");
+            }
+            return null;
+        }
+
+        /**
+         * Подписать клиента на ленту. Поток событий обслуживает отдельный поток,
+         * чтобы долгие соединения не занимали исполнитель запросов.
+         */
+        private void openEventStream(com.sun.net.httpserver.HttpExchange exchange) throws IOException {
+            ConfigManager config = plugin.getConfigManager();
+            LiveEventBus eventBus = plugin.getEventBus();
+            if (eventBus.getSubscriberCount() >= config.getWebEventsMaxSubscribers()) {
+                exchange.getResponseHeaders().set("Retry-After", "10");
+                sendError(exchange, 503, "Слишком много подключений к ленте событий");
+                return;
+            }
+
+            LiveEventBus.Subscription subscription = eventBus.subscribe(config.getWebEventsBufferSize());
+
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=UTF-8");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
+            exchange.sendResponseHeaders(200, 0);
+
+            Thread thread = new Thread(() -> streamEvents(exchange, subscription),
+                    "NeoHide-SSE-" + eventStreamCounter.incrementAndGet());
+            thread.setDaemon(true);
+            eventStreams.add(thread);
+            thread.start();
+        }
+
+        private void exportLogs(com.sun.net.httpserver.HttpExchange exchange) throws IOException {
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String format = query.getOrDefault("format", "ndjson").toLowerCase();
+            if (!"ndjson".equals(format) && !"csv".equals(format)) {
+                sendError(exchange, 400, "Формат выгрузки: ndjson или csv");
+                return;
+            }
+
+            java.sql.Timestamp from;
+            java.sql.Timestamp to;
+            try {
+                from = parseTime(query.get("from"));
+                to = parseTime(query.get("to"));
+            } catch (IllegalArgumentException e) {
+                sendError(exchange, 400, "Время указывается в миллисекундах или ISO-8601: " + e.getMessage());
+                return;
+            }
+            String player = emptyToNull(query.get("player"));
+            String action = emptyToNull(query.get("action"));
+
+            boolean csv = "csv".equals(format);
+            exchange.getResponseHeaders().set("Content-Type",
+                    csv ? "text/csv; charset=UTF-8" : "application/x-ndjson; charset=UTF-8");
+            exchange.getResponseHeaders().set("Content-Disposition",
+                    "attachment; filename=\"neohide-logs." + format + "\"");
+            exchange.sendResponseHeaders(200, 0);
+
+            try (OutputStream os = exchange.getResponseBody()) {
+                DatabaseManager.LogRowHandler handler;
+                if (csv) {
+                    java.io.Writer writer = new java.io.BufferedWriter(
+                            new java.io.OutputStreamWriter(os, StandardCharsets.UTF_8), 8192);
+                    writer.write(String.join(",", EXPORT_COLUMNS));
+                    writer.write("\r\n");
+                    handler = row -> writeCsvRow(writer, row);
+                    plugin.getDatabaseManager().exportLogs(from, to, player, action, handler);
+                    writer.flush();
+                } else {
+                    JsonWriter json = new JsonWriter(os);
+                    handler = row -> json.write(row).newLine();
+                    plugin.getDatabaseManager().exportLogs(from, to, player, action, handler);
+                    json.flush();
+                }
+            } catch (java.sql.SQLException e) {
+                // Заголовки уже отправлены — обрываем ответ, клиент получит неполный файл
+                plugin.getLogger().log(Level.WARNING, "Ошибка выгрузки логов", e);
+                exchange.close();
+            }
+        }
+
+        private void writeCsvRow(java.io.Writer writer, Map<String, Object> row) throws IOException {
+            for (int i = 0; i < EXPORT_COLUMNS.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                Object value = row.get(EXPORT_COLUMNS[i]);
+                if (value == null) {
+                    continue;
+                }
+                String text = value instanceof Date ? ((Date) value).toInstant().toString() : value.toString();
+                if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0
+                        || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+                    writer.write('"');
+                    writer.write(text.replace("\"", "\"\""));
+                    writer.write('"');
+                } else {
+                    writer.write(text);
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        private java.sql.Timestamp parseTime(String value) {
+            if (value == null || value.isEmpty()) {
+                return null;
+            }
+            try {
+                return new java.sql.Timestamp(Long.parseLong(value));
+            } catch (NumberFormatException e) {
+                try {
+                    return java.sql.Timestamp.from(java.time.Instant.parse(value));
+                } catch (java.time.format.DateTimeParseException ex) {
+                    throw new IllegalArgumentException(value);
+                }
+            }
+        }
+
+        private String emptyToNull(String value) {
+            return value == null || value.isEmpty() ? null : value;
+        }
+
         private Map<String, String> parseQuery(String query) {
             Map<String, String> result = new HashMap<>();
             if (query == null || query.isEmpty()) return result;
@@ -184,72 +642,33 @@ public class WebServerManager {
             return result;
         }
 
-        private void sendJson(com.sun.net.httpserver.HttpExchange exchange, Object data) throws IOException {
-            String json = "{}";
+        private int parseLimit(String value) {
+            if (value == null) {
+                return DEFAULT_PAGE_SIZE;
+            }
             try {
-                // Простой JSON сериализатор
-                if (data instanceof Map) {
-                    json = mapToJson((Map<?, ?>) data);
-                } else if (data instanceof List) {
-                    json = listToJson((List<?>) data);
-                }
-            } catch (Exception e) {
-                json = "{\"error\":\"Ошибка сериализации JSON\"}";
+                return Math.max(1, Math.min(MAX_PAGE_SIZE, Integer.parseInt(value)));
+            } catch (NumberFormatException e) {
+                return DEFAULT_PAGE_SIZE;
             }
+        }
 
-            byte[] responseBytes = json.getBytes(StandardCharsets.UTF_8);
+        private void sendJson(com.sun.net.httpserver.HttpExchange exchange, Object data) throws IOException {
+            writeJson(exchange, 200, data);
+        }
+
+        /**
+         * Записать JSON прямо в тело ответа. Длина заранее не известна —
+         * ответ уходит с chunked transfer encoding.
+         */
+        private void writeJson(com.sun.net.httpserver.HttpExchange exchange, int code, Object data) throws IOException {
             exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
             exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
-            exchange.sendResponseHeaders(200, responseBytes.length);
+            exchange.sendResponseHeaders(code, 0);
 
             try (OutputStream os = exchange.getResponseBody()) {
-                os.write(responseBytes);
-            }
-        }
-
-        private String mapToJson(Map<?, ?> map) {
-            StringBuilder json = new StringBuilder("{");
-            boolean first = true;
-            for (Map.Entry<?, ?> entry : map.entrySet()) {
-                if (!first) json.append(",");
-                json.append("\"").append(entry.getKey()).append("\":");
-                Object value = entry.getValue();
-                if (value instanceof String) {
-                    json.append("\"").append(escapeJson(value.toString())).append("\"");
-                } else if (value instanceof Number || value instanceof Boolean) {
-                    json.append(value);
-                } else {
-                    json.append("\"").append(escapeJson(value.toString())).append("\"");
-                }
-                first = false;
-            }
-            json.append("}");
-            return json.toString();
-        }
-
-        private String listToJson(List<?> list) {
-            StringBuilder json = new StringBuilder("[");
-            boolean first = true;
-            for (Object item : list) {
-                if (!first) json.append(",");
-                if (item instanceof String) {
-                    json.append("\"").append(escapeJson(item.toString())).append("\"");
-                } else {
-                    json.append(item);
-                }
-                first = false;
+                new JsonWriter(os).write(data).flush();
             }
-            json.append("]");
-            return json.toString();
-        }
-
-        private String escapeJson(String str) {
-            if (str == null) return "";
-            return str.replace("\\", "\\\\")
-                    .replace("\"", "\\\"")
-                    .replace("\n", "\\n")
-                    .replace("\r", "\\r")
-                    .replace("\t", "\\t");
         }
 
         private void sendSuccess(com.sun.net.httpserver.HttpExchange exchange, String message) throws IOException {
@@ -265,435 +684,69 @@ public class WebServerManager {
             error.put("code", code);
             error.put("message", message);
 
-            String json = mapToJson(error);
-            byte[] responseBytes = json.getBytes(StandardCharsets.UTF_8);
-            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
-            exchange.sendResponseHeaders(code, responseBytes.length);
-
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(responseBytes);
-            }
+            writeJson(exchange, code, error);
         }
     }
 
     // ========== Static Handler ==========
+    /**
+     * Файлы панели из ресурсов плагина: загружаются один раз, сжатые варианты
+     * готовы заранее, повторная загрузка с тем же ETag получает 304 без тела.
+     */
     private class StaticHandler implements com.sun.net.httpserver.HttpHandler {
+        private final Map<String, StaticAsset> assets;
+
+        StaticHandler(Map<String, StaticAsset> assets) {
+            this.assets = assets;
+        }
+
         @Override
         public void handle(com.sun.net.httpserver.HttpExchange exchange) throws IOException {
             String path = exchange.getRequestURI().getPath();
+            StaticAsset asset = assets.get("/".equals(path) ? "/index.html" : path);
 
-            if ("/".equals(path) || "/index.html".equals(path)) {
-                serveIndex(exchange);
-            } else if ("/style.css".equals(path)) {
-                serveCss(exchange);
-            } else {
+            if (asset == null) {
                 sendError(exchange, 404, "Файл не найден");
+                return;
             }
-        }
 
-        private void serveIndex(com.sun.net.httpserver.HttpExchange exchange) throws IOException {
-            String html = "<!DOCTYPE html>\n" +
-                    "<html lang='ru'>\n" +
-                    "<head>\n" +
-                    "    <meta charset='UTF-8'>\n" +
-                    "    <meta name='viewport' content='width=device-width, initial-scale=1.0'>\n" +
-                    "    <title>NeoHide - Панель управления</title>\n" +
-                    "    <style>\n" +
-                    "        body { font-family: 'Segoe UI', Tahoma, Geneva, Verdana, sans-serif; margin: 0; padding: 20px; background: linear-gradient(135deg, #667eea 0%, #764ba2 100%); min-height: 100vh; color: #333; }\n" +
-                    "        .container { max-width: 1200px; margin: 0 auto; background: rgba(255, 255, 255, 0.95); border-radius: 15px; padding: 30px; box-shadow: 0 10px 30px rgba(0,0,0,0.2); }\n" +
-                    "        .header { text-align: center; margin-bottom: 30px; padding-bottom: 20px; border-bottom: 2px solid #667eea; }\n" +
-                    "        .header h1 { color: #667eea; margin: 0; font-size: 2.5em; }\n" +
-                    "        .header p { color: #666; font-size: 1.1em; }\n" +
-                    "        .stats-grid { display: grid; grid-template-columns: repeat(auto-fit, minmax(250px, 1fr)); gap: 20px; margin-bottom: 30px; }\n" +
-                    "        .stat-card { background: white; padding: 25px; border-radius: 10px; box-shadow: 0 5px 15px rgba(0,0,0,0.1); transition: transform 0.3s, box-shadow 0.3s; }\n" +
-                    "        .stat-card:hover { transform: translateY(-5px); box-shadow: 0 10px 25px rgba(0,0,0,0.15); }\n" +
-                    "        .stat-card h3 { margin-top: 0; color: #555; font-size: 1.2em; }\n" +
-                    "        .stat-value { font-size: 2.5em; font-weight: bold; color: #667eea; margin: 10px 0; }\n" +
-                    "        .control-panel { background: white; padding: 30px; border-radius: 10px; margin-bottom: 30px; box-shadow: 0 5px 15px rgba(0,0,0,0.1); }\n" +
-                    "        .control-panel h2 { margin-top: 0; color: #667eea; }\n" +
-                    "        .toggle-container { display: flex; align-items: center; margin-bottom: 20px; }\n" +
-                    "        .toggle-switch { position: relative; display: inline-block; width: 60px; height: 34px; margin-right: 15px; }\n" +
-                    "        .toggle-switch input { opacity: 0; width: 0; height: 0; }\n" +
-                    "        .toggle-slider { position: absolute; cursor: pointer; top: 0; left: 0; right: 0; bottom: 0; background-color: #ccc; transition: .4s; border-radius: 34px; }\n" +
-                    "        .toggle-slider:before { position: absolute; content: ''; height: 26px; width: 26px; left: 4px; bottom: 4px; background-color: white; transition: .4s; border-radius: 50%; }\n" +
-                    "        input:checked + .toggle-slider { background-color: #667eea; }\n" +
-                    "        input:checked + .toggle-slider:before { transform: translateX(26px); }\n" +
-                    "        .command-section { background: white; padding: 30px; border-radius: 10px; box-shadow: 0 5px 15px rgba(0,0,0,0.1); }\n" +
-                    "        .command-input { display: flex; gap: 10px; margin-bottom: 20px; }\n" +
-                    "        input[type='text'], input[type='password'] { flex: 1; padding: 12px 15px; border: 2px solid #ddd; border-radius: 8px; font-size: 16px; transition: border-color 0.3s; }\n" +
-                    "        input:focus { outline: none; border-color: #667eea; }\n" +
-                    "        button { padding: 12px 25px; background: linear-gradient(135deg, #667eea 0%, #764ba2 100%); color: white; border: none; border-radius: 8px; font-size: 16px; font-weight: bold; cursor: pointer; transition: transform 0.2s, box-shadow 0.2s; }\n" +
-                    "        button:hover { transform: translateY(-2px); box-shadow: 0 5px 15px rgba(102, 126, 234, 0.4); }\n" +
-                    "        button:active { transform: translateY(0); }\n" +
-                    "        .button-group { display: flex; gap: 10px; flex-wrap: wrap; margin-top: 20px; }\n" +
-                    "        .command-list { margin-top: 20px; max-height: 300px; overflow-y: auto; }\n" +
-                    "        .command-item { display: flex; justify-content: space-between; align-items: center; padding: 15px; border-bottom: 1px solid #eee; background: #f9f9f9; border-radius: 8px; margin-bottom: 10px; }\n" +
-                    "        .command-item:last-child { border-bottom: none; }\n" +
-                    "        .auth-panel { background: linear-gradient(135deg, #f093fb 0%, #f5576c 100%); padding: 30px; border-radius: 10px; margin-bottom: 30px; box-shadow: 0 5px 15px rgba(0,0,0,0.1); color: white; }\n" +
-                    "        .auth-panel h3 { margin-top: 0; }\n" +
-                    "        .status-badge { display: inline-block; padding: 5px 15px; border-radius: 20px; font-size: 0.9em; font-weight: bold; margin-left: 10px; }\n" +
-                    "        .status-connected { background: #4CAF50; color: white; }\n" +
-                    "        .status-disconnected { background: #f44336; color: white; }\n" +
-                    "        .log-entry { background: #f5f5f5; padding: 10px 15px; border-radius: 5px; margin-bottom: 5px; font-family: monospace; font-size: 0.9em; }\n" +
-                    "        .error-message { background: #ffebee; color: #c62828; padding: 15px; border-radius: 8px; margin: 15px 0; }\n" +
-                    "        .success-message { background: #e8f5e9; color: #2e7d32; padding: 15px; border-radius: 8px; margin: 15px 0; }\n" +
-                    "    </style>\n" +
-                    "</head>\n" +
-                    "<body>\n" +
-                    "    <div class='container'>\n" +
-                    "        <div class='header'>\n" +
-                    "            <h1>NeoHide Dashboard</h1>\n" +
-                    "            <p>Панель управления защитой Minecraft сервера</p>\n" +
-                    "            <div id='connectionStatus'>\n" +
-                    "                <span id='statusText'>Не подключено</span>\n" +
-                    "                <span id='statusBadge' class='status-badge status-disconnected'>Отключено</span>\n" +
-                    "            </div>\n" +
-                    "        </div>\n" +
-                    "        \n" +
-                    "        <div class='auth-panel' id='authPanel'>\n" +
-                    "            <h3>🔐 Авторизация</h3>\n" +
-                    "            <p>Для доступа к панели управления введите токен из config.yml</p>\n" +
-                    "            <div class='command-input'>\n" +
-                    "                <input type='password' id='authToken' placeholder='Введите секретный токен'>\n" +
-                    "                <button onclick='connect()'>Подключиться</button>\n" +
-                    "            </div>\n" +
-                    "            <p><small>Токен можно найти в файле plugins/NeoHide/config.yml в разделе web.auth-token</small></p>\n" +
-                    "        </div>\n" +
-                    "        \n" +
-                    "        <div id='dashboard' style='display:none;'>\n" +
-                    "            <div class='stats-grid'>\n" +
-                    "                <div class='stat-card'>\n" +
-                    "                    <h3>📋 Скрытые команды</h3>\n" +
-                    "                    <div class='stat-value' id='hiddenCount'>0</div>\n" +
-                    "                    <p>Команд скрыто от игроков</p>\n" +
-                    "                </div>\n" +
-                    "                <div class='stat-card'>\n" +
-                    "                    <h3>👥 Онлайн игроки</h3>\n" +
-                    "                    <div class='stat-value' id='onlineCount'>0</div>\n" +
-                    "                    <p>Игроков на сервере</p>\n" +
-                    "                </div>\n" +
-                    "                <div class='stat-card'>\n" +
-                    "                    <h3>👻 Игроки в ванше</h3>\n" +
-                    "                    <div class='stat-value' id='vanishedCount'>0</div>\n" +
-                    "                    <p>Скрытых администраторов</p>\n" +
-                    "                </div>\n" +
-                    "                <div class='stat-card'>\n" +
-                    "                    <h3>🛡️ Статус защиты</h3>\n" +
-                    "                    <div class='stat-value' id='protectionStatus'>Нет</div>\n" +
-                    "                    <p>Система защиты активна</p>\n" +
-                    "                </div>\n" +
-                    "            </div>\n" +
-                    "            \n" +
-                    "            <div class='control-panel'>\n" +
-                    "                <h2>⚙️ Управление защитой</h2>\n" +
-                    "                \n" +
-                    "                <div class='toggle-container'>\n" +
-                    "                    <label class='toggle-switch'>\n" +
-                    "                        <input type='checkbox' id='protectionToggle' onchange='toggleProtection()'>\n" +
-                    "                        <span class='toggle-slider'></span>\n" +
-                    "                    </label>\n" +
-                    "                    <label for='protectionToggle' style='font-size: 1.1em; font-weight: bold;'>Защита команд включена</label>\n" +
-                    "                </div>\n" +
-                    "                \n" +
-                    "                <div class='command-section'>\n" +
-                    "                    <h3>🎯 Управление командами</h3>\n" +
-                    "                    <div class='command-input'>\n" +
-                    "                        <input type='text' id='commandInput' placeholder='Введите команду для скрытия (например: plugin)'>\n" +
-                    "                        <button onclick='hideCommand()'>Скрыть команду</button>\n" +
-                    "                    </div>\n" +
-                    "                    \n" +
-                    "                    <div class='button-group'>\n" +
-                    "                        <button onclick='refreshData()'>🔄 Обновить данные</button>\n" +
-                    "                        <button onclick='showLogs()'>📜 Показать логи</button>\n" +
-                    "                        <button onclick='reloadConfig()'>⚡ Перезагрузить конфиг</button>\n" +
-                    "                    </div>\n" +
-                    "                </div>\n" +
-                    "            </div>\n" +
-                    "            \n" +
-                    "            <div class='command-section'>\n" +
-                    "                <h3>📋 Список скрытых команд</h3>\n" +
-                    "                <div class='command-list' id='commandsList'>\n" +
-                    "                    <p style='text-align: center; color: #888;'>Загрузка списка команд...</p>\n" +
-                    "                </div>\n" +
-                    "            </div>\n" +
-                    "            \n" +
-                    "            <div id='logsSection' style='display:none;'>\n" +
-                    "                <div class='command-section'>\n" +
-                    "                    <h3>📜 Последние действия</h3>\n" +
-                    "                    <div id='logsList'></div>\n" +
-                    "                </div>\n" +
-                    "            </div>\n" +
-                    "            \n" +
-                    "            <div id='messages' style='margin-top: 20px;'></div>\n" +
-                    "        </div>\n" +
-                    "    </div>\n" +
-                    "    \n" +
-                    "    <script>\n" +
-                    "        let authToken = '';\n" +
-                    "        let autoRefreshInterval = null;\n" +
-                    "        \n" +
-                    "        function connect() {\n" +
-                    "            authToken = document.getElementById('authToken').value.trim();\n" +
-                    "            if (!authToken) {\n" +
-                    "                showMessage('Введите токен авторизации', 'error');\n" +
-                    "                return;\n" +
-                    "            }\n" +
-                    "            \n" +
-                    "            // Сохраняем токен в localStorage\n" +
-                    "            localStorage.setItem('neohide_token', authToken);\n" +
-                    "            \n" +
-                    "            // Скрываем панель авторизации, показываем dashboard\n" +
-                    "            document.getElementById('authPanel').style.display = 'none';\n" +
-                    "            document.getElementById('dashboard').style.display = 'block';\n" +
-                    "            \n" +
-                    "            // Обновляем статус\n" +
-                    "            updateStatus('Подключение...', 'disconnected');\n" +
-                    "            \n" +
-                    "            // Загружаем данные\n" +
-                    "            refreshData();\n" +
-                    "            \n" +
-                    "            // Запускаем автообновление каждые 10 секунд\n" +
-                    "            if (autoRefreshInterval) {\n" +
-                    "                clearInterval(autoRefreshInterval);\n" +
-                    "            }\n" +
-                    "            autoRefreshInterval = setInterval(refreshData, 10000);\n" +
-                    "        }\n" +
-                    "        \n" +
-                    "        function updateStatus(text, type) {\n" +
-                    "            const statusText = document.getElementById('statusText');\n" +
-                    "            const statusBadge = document.getElementById('statusBadge');\n" +
-                    "            \n" +
-                    "            statusText.textContent = text;\n" +
-                    "            statusBadge.textContent = type === 'connected' ? 'Подключено' : 'Отключено';\n" +
-                    "            statusBadge.className = 'status-badge ' + (type === 'connected' ? 'status-connected' : 'status-disconnected');\n" +
-                    "        }\n" +
-                    "        \n" +
-                    "        function showMessage(message, type) {\n" +
-                    "            const messagesDiv = document.getElementById('messages');\n" +
-                    "            const messageDiv = document.createElement('div');\n" +
-                    "            messageDiv.className = type === 'error' ? 'error-message' : 'success-message';\n" +
-                    "            messageDiv.textContent = message;\n" +
-                    "            \n" +
-                    "            messagesDiv.appendChild(messageDiv);\n" +
-                    "            \n" +
-                    "            // Автоматически удаляем сообщение через 5 секунд\n" +
-                    "            setTimeout(() => {\n" +
-                    "                if (messageDiv.parentNode) {\n" +
-                    "                    messageDiv.remove();\n" +
-                    "                }\n" +
-                    "            }, 5000);\n" +
-                    "        }\n" +
-                    "        \n" +
-                    "        async function apiCall(endpoint, method = 'GET', params = {}) {\n" +
-                    "            const url = '/api' + endpoint;\n" +
-                    "            let options = {\n" +
-                    "                method: method,\n" +
-                    "                headers: {\n" +
-                    "                    'X-Auth-Token': authToken,\n" +
-                    "                    'Content-Type': 'application/x-www-form-urlencoded; charset=UTF-8'\n" +
-                    "                }\n" +
-                    "            };\n" +
-                    "            \n" +
-                    "            if (method === 'POST' && Object.keys(params).length > 0) {\n" +
-                    "                const formData = new URLSearchParams();\n" +
-                    "                for (const [key, value] of Object.entries(params)) {\n" +
-                    "                    formData.append(key, value);\n" +
-                    "                }\n" +
-                    "                options.body = formData;\n" +
-                    "            } else if (method === 'GET' && Object.keys(params).length > 0) {\n" +
-                    "                const query = new URLSearchParams(params).toString();\n" +
-                    "                options.url = url + '?' + query;\n" +
-                    "            }\n" +
-                    "            \n" +
-                    "            try {\n" +
-                    "                const response = await fetch(url, options);\n" +
-                    "                \n" +
-                    "                if (response.status === 401) {\n" +
-                    "                    updateStatus('Неверный токен', 'disconnected');\n" +
-                    "                    showMessage('Неверный токен авторизации. Проверьте config.yml', 'error');\n" +
-                    "                    return null;\n" +
-                    "                }\n" +
-                    "                \n" +
-                    "                if (!response.ok) {\n" +
-                    "                    throw new Error(`HTTP ${response.status}: ${response.statusText}`);\n" +
-                    "                }\n" +
-                    "                \n" +
-                    "                const data = await response.json();\n" +
-                    "                updateStatus('Подключено', 'connected');\n" +
-                    "                return data;\n" +
-                    "                \n" +
-                    "            } catch (error) {\n" +
-                    "                console.error('Ошибка API:', error);\n" +
-                    "                updateStatus('Ошибка подключения', 'disconnected');\n" +
-                    "                showMessage('Ошибка подключения к серверу: ' + error.message, 'error');\n" +
-                    "                return null;\n" +
-                    "            }\n" +
-                    "        }\n" +
-                    "        \n" +
-                    "        async function refreshData() {\n" +
-                    "            try {\n" +
-                    "                // Получаем статус\n" +
-                    "                const status = await apiCall('/status');\n" +
-                    "                if (!status) return;\n" +
-                    "                \n" +
-                    "                // Обновляем переключатель защиты\n" +
-                    "                document.getElementById('protectionToggle').checked = status.protection_enabled;\n" +
-                    "                document.getElementById('protectionStatus').textContent = status.protection_enabled ? 'Активна' : 'Отключена';\n" +
-                    "                document.getElementById('protectionStatus').style.color = status.protection_enabled ? '#4CAF50' : '#f44336';\n" +
-                    "                \n" +
-                    "                // Получаем статистику\n" +
-                    "                const stats = await apiCall('/stats');\n" +
-                    "                if (!stats) return;\n" +
-                    "                \n" +
-                    "                document.getElementById('hiddenCount').textContent = stats.hidden_commands || 0;\n" +
-                    "                document.getElementById('onlineCount').textContent = stats.online_players || 0;\n" +
-                    "                document.getElementById('vanishedCount').textContent = stats.vanished_players || 0;\n" +
-                    "                \n" +
-                    "                // Получаем команды\n" +
-                    "                const commands = await apiCall('/commands');\n" +
-                    "                if (!commands) return;\n" +
-                    "                \n" +
-                    "                const commandsList = document.getElementById('commandsList');\n" +
-                    "                commandsList.innerHTML = '';\n" +
-                    "                \n" +
-                    "                if (commands.length === 0) {\n" +
-                    "                    commandsList.innerHTML = '<p style=\"text-align: center; color: #888;\">Нет скрытых команд</p>';\n" +
-                    "                } else {\n" +
-                    "                    commands.forEach(cmd => {\n" +
-                    "                        const item = document.createElement('div');\n" +
-                    "                        item.className = 'command-item';\n" +
-                    "                        item.innerHTML = `\n" +
-                    "                            <div>\n" +
-                    "                                <strong style=\"color: #667eea;\">/${cmd}</strong>\n" +
-                    "                            </div>\n" +
-                    "                            <button onclick=\"unhideCommand('${cmd}')\">Показать команду</button>\n" +
-                    "                        `;\n" +
-                    "                        commandsList.appendChild(item);\n" +
-                    "                    });\n" +
-                    "                }\n" +
-                    "                \n" +
-                    "                showMessage('Данные успешно обновлены', 'success');\n" +
-                    "                \n" +
-                    "            } catch (error) {\n" +
-                    "                console.error('Ошибка обновления данных:', error);\n" +
-                    "                showMessage('Ошибка при обновлении данных', 'error');\n" +
-                    "            }\n" +
-                    "        }\n" +
-                    "        \n" +
-                    "        async function hideCommand() {\n" +
-                    "            const command = document.getElementById('commandInput').value.trim();\n" +
-                    "            if (!command) {\n" +
-                    "                showMessage('Введите команду для скрытия', 'error');\n" +
-                    "                return;\n" +
-                    "            }\n" +
-                    "            \n" +
-                    "            // Убираем слеш если есть\n" +
-                    "            const cleanCommand = command.replace(/^\\//, '');\n" +
-                    "            \n" +
-                    "            const result = await apiCall('/hide', 'POST', { command: cleanCommand });\n" +
-                    "            if (result && result.success) {\n" +
-                    "                document.getElementById('commandInput').value = '';\n" +
-                    "                showMessage(result.message, 'success');\n" +
-                    "                refreshData();\n" +
-                    "            }\n" +
-                    "        }\n" +
-                    "        \n" +
-                    "        async function unhideCommand(command) {\n" +
-                    "            if (!confirm(`Вы действительно хотите показать команду /${command}?`)) return;\n" +
-                    "            \n" +
-                    "            const result = await apiCall('/unhide', 'POST', { command: command });\n" +
-                    "            if (result && result.success) {\n" +
-                    "                showMessage(result.message, 'success');\n" +
-                    "                refreshData();\n" +
-                    "            }\n" +
-                    "        }\n" +
-                    "        \n" +
-                    "        async function toggleProtection() {\n" +
-                    "            const enabled = document.getElementById('protectionToggle').checked;\n" +
-                    "            const result = await apiCall('/toggle', 'POST', { enabled: enabled });\n" +
-                    "            if (result && result.success) {\n" +
-                    "                showMessage(result.message, 'success');\n" +
-                    "                refreshData();\n" +
-                    "            } else {\n" +
-                    "                // Откатываем переключатель если ошибка\n" +
-                    "                document.getElementById('protectionToggle').checked = !enabled;\n" +
-                    "            }\n" +
-                    "        }\n" +
-                    "        \n" +
-                    "        async function showLogs() {\n" +
-                    "            const logsSection = document.getElementById('logsSection');\n" +
-                    "            const logsList = document.getElementById('logsList');\n" +
-                    "            \n" +
-                    "            if (logsSection.style.display === 'none') {\n" +
-                    "                logsList.innerHTML = '<p style=\"text-align: center; color: #888;\">Загрузка логов...</p>';\n" +
-                    "                logsSection.style.display = 'block';\n" +
-                    "                \n" +
-                    "                // Здесь можно добавить загрузку логов когда будет API\n" +
-                    "                setTimeout(() => {\n" +
-                    "                    logsList.innerHTML = '<p style=\"text-align: center; color: #888;\">Функция логов в разработке</p>';\n" +
-                    "                }, 1000);\n" +
-                    "            } else {\n" +
-                    "                logsSection.style.display = 'none';\n" +
-                    "            }\n" +
-                    "        }\n" +
-                    "        \n" +
-                    "        async function reloadConfig() {\n" +
-                    "            if (!confirm('Перезагрузить конфигурацию плагина?\\nИспользуйте команду /neohide reload в игре')) return;\n" +
-                    "            showMessage('Для перезагрузки используйте /neohide reload в игре', 'error');\n" +
-                    "        }\n" +
-                    "        \n" +
-                    "        function disconnect() {\n" +
-                    "            if (autoRefreshInterval) {\n" +
-                    "                clearInterval(autoRefreshInterval);\n" +
-                    "                autoRefreshInterval = null;\n" +
-                    "            }\n" +
-                    "            \n" +
-                    "            localStorage.removeItem('neohide_token');\n" +
-                    "            document.getElementById('dashboard').style.display = 'none';\n" +
-                    "            document.getElementById('authPanel').style.display = 'block';\n" +
-                    "            document.getElementById('authToken').value = '';\n" +
-                    "            updateStatus('Не подключено', 'disconnected');\n" +
-                    "        }\n" +
-                    "        \n" +
-                    "        // Проверяем сохраненный токен при загрузке\n" +
-                    "        window.onload = function() {\n" +
-                    "            const savedToken = localStorage.getItem('neohide_token');\n" +
-                    "            if (savedToken) {\n" +
-                    "                document.getElementById('authToken').value = savedToken;\n" +
-                    "                connect();\n" +
-                    "            }\n" +
-                    "            \n" +
-                    "            // Добавляем кнопку отключения\n" +
-                    "            const header = document.querySelector('.header');\n" +
-                    "            const disconnectBtn = document.createElement('button');\n" +
-                    "            disconnectBtn.textContent = 'Выйти';\n" +
-                    "            disconnectBtn.style.marginLeft = '20px';\n" +
-                    "            disconnectBtn.style.background = 'linear-gradient(135deg, #f093fb 0%, #f5576c 100%)';\n" +
-                    "            disconnectBtn.onclick = disconnect;\n" +
-                    "            header.appendChild(disconnectBtn);\n" +
-                    "        };\n" +
-                    "    </script>\n" +
-                    "</body>\n" +
-                    "</html>";
-
-            byte[] responseBytes = html.getBytes(StandardCharsets.UTF_8);
-            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
-            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
-            exchange.sendResponseHeaders(200, responseBytes.length);
+            String method = exchange.getRequestMethod();
+            boolean head = "HEAD".equals(method);
+            if (!head && !"GET".equals(method)) {
+                sendError(exchange, 405, "Метод не поддерживается");
+                return;
+            }
 
-            try (OutputStream os = exchange.getResponseBody()) {
-                os.write(responseBytes);
+            StaticAsset.Variant variant = asset.select(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+
+            com.sun.net.httpserver.Headers headers = exchange.getResponseHeaders();
+            headers.set("ETag", variant.getEtag());
+            headers.set("Vary", "Accept-Encoding");
+            // Файлы без версии в имени — браузер перепроверяет их по ETag при каждой загрузке
+            headers.set("Cache-Control", "no-cache");
+
+            if (StaticAsset.matches(exchange.getRequestHeaders().getFirst("If-None-Match"), variant)) {
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
             }
-        }
 
-        private void serveCss(com.sun.net.httpserver.HttpExchange exchange) throws IOException {
-            String css = "body { font-family: Arial, sans-serif; }";
-            byte[] responseBytes = css.getBytes(StandardCharsets.UTF_8);
-            exchange.getResponseHeaders().set("Content-Type", "text/css; charset=UTF-8");
-            exchange.sendResponseHeaders(200, responseBytes.length);
+            headers.set("Content-Type", asset.getContentType());
+            if (variant.getEncoding() != null) {
+                headers.set("Content-Encoding", variant.getEncoding());
+            }
 
+            byte[] body = variant.getBody();
+            if (head) {
+                headers.set("Content-Length", String.valueOf(body.length));
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+                return;
+            }
+
+            exchange.sendResponseHeaders(200, body.length);
             try (OutputStream os = exchange.getResponseBody()) {
-                os.write(responseBytes);
+                os.write(body);
             }
         }
 
@@ -6,15 +6,42 @@ import org.bukkit.permissions.PermissionAttachment;
 import org.bukkit.permissions.PermissionAttachmentInfo;
 import org.bukkit.plugin.java.JavaPlugin;
 import com.neohide.neohide.managers.ConfigManager;
+import com.neohide.neohide.managers.LiveEventBus;
+import com.neohide.neohide.util.CompactIntSet;
+import com.neohide.neohide.util.ListSnapshot;
+import com.neohide.neohide.util.PermissionDictionary;
+import com.neohide.neohide.util.PermissionTrie;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.util.*;
 
 public class PermissionProtection {
 
     private final JavaPlugin plugin;
     private final ConfigManager configManager;
-    private Map<UUID, Set<String>> originalPermissions;
+    // Права игроков при входе: id из общего словаря в сжатых множествах
+    private final PermissionDictionary permissionDictionary = new PermissionDictionary();
+    private Map<UUID, CompactIntSet> originalPermissions;
     private Map<UUID, PermissionAttachment> permissionAttachments;
 
+    // Что сейчас записано в наше вложение: изменения применяются разницей
+    private final Map<UUID, Map<String, Boolean>> appliedPermissions = new HashMap<>();
+    // Игроки, которым нужен пересчёт прав: один пересчёт на игрока за тик
+    private final Set<UUID> pendingRecalculation = new LinkedHashSet<>();
+    private boolean recalculationScheduled;
+    // Внутренняя карта PermissionAttachment: запись в неё не вызывает пересчёт на каждое право
+    private VarHandle attachmentPermissions;
+    private boolean attachmentPermissionsResolved;
+
+    // Отпечаток проверенного набора эффективных прав: полное сравнение только при его изменении.
+    // Отпечатки действительны для одной версии списка защищённых прав
+    private final Map<UUID, Long> fingerprints = new HashMap<>();
+    private long fingerprintsVersion = -1;
+    // Игроки, которых нужно проверить в ближайший тик (смена мира, команды прав)
+    private final Set<UUID> dirtyPlayers = new LinkedHashSet<>();
+    // Очередь фоновой проверки: за тик проверяется несколько игроков по кругу
+    private final Deque<UUID> sweepQueue = new ArrayDeque<>();
+
     public PermissionProtection(JavaPlugin plugin) {
         this.plugin = plugin;
         this.configManager = ((com.neohide.neohide.NeoHide) plugin).getConfigManager();
@@ -27,102 +54,313 @@ public class PermissionProtection {
             return;
         }
 
-        // Сохраняем оригинальные права для всех онлайн игроков
-        for (Player player : Bukkit.getOnlinePlayers()) {
+        // Сохраняем оригинальные права для всех онлайн игроков (кусками по тикам)
+        ((com.neohide.neohide.NeoHide) plugin).getSliceScheduler().submitPlayers("permission-setup", player -> {
             saveOriginalPermissions(player);
             applyProtection(player);
+        });
+    }
+
+    /**
+     * Заново применить защиту ко всем игрокам (изменился список защищённых прав)
+     */
+    public void reapplyProtection() {
+        if (!configManager.isPermissionProtectionEnabled()) {
+            return;
         }
+        ((com.neohide.neohide.NeoHide) plugin).getSliceScheduler().submitPlayers("permission-apply", this::applyProtection);
     }
 
+    // Запреты не учитываются: в эффективных правах есть и наши собственные запреты защищённых прав
     private void saveOriginalPermissions(Player player) {
-        Set<String> perms = new HashSet<>();
-        for (PermissionAttachmentInfo entry : player.getEffectivePermissions()) {
-            perms.add(entry.getPermission().toLowerCase());
+        Set<PermissionAttachmentInfo> effective = player.getEffectivePermissions();
+        int[] ids = new int[effective.size()];
+        int count = 0;
+        for (PermissionAttachmentInfo entry : effective) {
+            if (entry.getValue()) {
+                ids[count++] = permissionDictionary.intern(entry.getPermission());
+            }
         }
-        originalPermissions.put(player.getUniqueId(), perms);
+        originalPermissions.put(player.getUniqueId(), CompactIntSet.of(ids, count));
     }
 
     public void applyProtection(Player player) {
+        applyProtection(player, false);
+    }
+
+    /**
+     * Привести вложение игрока к нужному набору запретов.
+     * Меняются только отличающиеся права, пересчёт откладывается до конца тика.
+     *
+     * @param reattach пересоздать вложение, чтобы оно снова стало последним и
+     *                 перекрывало вложения других плагинов (исправление выдачи защищённого права).
+     *                 Права пересчитываются сразу: выданное право не должно действовать ещё тик
+     */
+    private void applyProtection(Player player, boolean reattach) {
         if (!configManager.isPermissionProtectionEnabled()) {
             return;
         }
 
         UUID uuid = player.getUniqueId();
+        PermissionAttachment attachment = permissionAttachments.get(uuid);
+        if (attachment != null && reattach) {
+            player.removeAttachment(attachment);
+            attachment = null;
+        }
+        if (attachment == null) {
+            attachment = player.addAttachment(plugin);
+            permissionAttachments.put(uuid, attachment);
+            appliedPermissions.put(uuid, new HashMap<>());
+        }
+
+        Map<String, Boolean> applied = appliedPermissions.get(uuid);
+        Map<String, Boolean> desired = desiredPermissions(player);
+        if (desired.equals(applied)) {
+            return;
+        }
+
+        Map<String, Boolean> raw = rawPermissions(attachment);
+        for (String permission : applied.keySet()) {
+            if (!desired.containsKey(permission)) {
+                if (raw != null) {
+                    raw.remove(permission);
+                } else {
+                    attachment.unsetPermission(permission);
+                }
+            }
+        }
+        for (Map.Entry<String, Boolean> entry : desired.entrySet()) {
+            if (!entry.getValue().equals(applied.get(entry.getKey()))) {
+                if (raw != null) {
+                    raw.put(entry.getKey(), entry.getValue());
+                } else {
+                    attachment.setPermission(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        applied.clear();
+        applied.putAll(desired);
 
-        // Удаляем старый PermissionAttachment если есть
-        if (permissionAttachments.containsKey(uuid)) {
-            player.removeAttachment(permissionAttachments.get(uuid));
+        if (raw == null) {
+            return;
         }
+        if (reattach) {
+            pendingRecalculation.remove(uuid);
+            player.recalculatePermissions();
+        } else {
+            scheduleRecalculation(player);
+        }
+    }
 
-        // Создаем новый
-        PermissionAttachment attachment = player.addAttachment(plugin);
-        permissionAttachments.put(uuid, attachment);
+    private Map<String, Boolean> desiredPermissions(Player player) {
+        Map<String, Boolean> desired = new HashMap<>();
 
         // Запрещаем защищенные права
         for (String permission : configManager.getProtectedPermissions()) {
-            attachment.setPermission(permission, false);
+            desired.put(permission.toLowerCase(), false);
         }
 
         // Если игрок не OP, запрещаем OP-права
         if (!player.isOp() && configManager.isHideOpCommands()) {
-            attachment.setPermission("*", false);
-            attachment.setPermission("bukkit.*", false);
-            attachment.setPermission("minecraft.*", false);
+            desired.put("*", false);
+            desired.put("bukkit.*", false);
+            desired.put("minecraft.*", false);
+        }
+        return desired;
+    }
+
+    private void scheduleRecalculation(Player player) {
+        pendingRecalculation.add(player.getUniqueId());
+        if (!recalculationScheduled) {
+            recalculationScheduled = true;
+            plugin.getServer().getScheduler().runTask(plugin, this::recalculatePending);
+        }
+    }
+
+    private void recalculatePending() {
+        recalculationScheduled = false;
+        List<UUID> pending = new ArrayList<>(pendingRecalculation);
+        pendingRecalculation.clear();
+        for (UUID uuid : pending) {
+            Player player = Bukkit.getPlayer(uuid);
+            if (player != null) {
+                player.recalculatePermissions();
+            }
         }
+    }
 
-        player.recalculatePermissions();
+    @SuppressWarnings("unchecked")
+    private Map<String, Boolean> rawPermissions(PermissionAttachment attachment) {
+        if (!attachmentPermissionsResolved) {
+            attachmentPermissionsResolved = true;
+            try {
+                attachmentPermissions = MethodHandles.privateLookupIn(PermissionAttachment.class, MethodHandles.lookup())
+                        .findVarHandle(PermissionAttachment.class, "permissions", Map.class);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                plugin.getLogger().warning("Прямая запись прав недоступна, каждое право будет пересчитываться: " + e.getMessage());
+            }
+        }
+        return attachmentPermissions != null ? (Map<String, Boolean>) attachmentPermissions.get(attachment) : null;
     }
 
     public void removeProtection(Player player) {
         UUID uuid = player.getUniqueId();
-        if (permissionAttachments.containsKey(uuid)) {
-            player.removeAttachment(permissionAttachments.get(uuid));
-            permissionAttachments.remove(uuid);
-            player.recalculatePermissions();
+        appliedPermissions.remove(uuid);
+        pendingRecalculation.remove(uuid);
+        // removeAttachment сам пересчитывает права
+        PermissionAttachment attachment = permissionAttachments.remove(uuid);
+        if (attachment != null) {
+            player.removeAttachment(attachment);
         }
     }
 
+    /**
+     * Полная проверка всех игроков кусками по тикам: после перезагрузки
+     * конфигурации и изменения списка защищённых прав уже выданные права
+     * могли попасть под защиту, не дожидаясь круговой проверки в tick()
+     */
     public void checkAndFixPermissions() {
         if (!configManager.isPermissionProtectionEnabled()) {
             return;
         }
 
-        for (Player player : Bukkit.getOnlinePlayers()) {
-            checkPlayerPermissions(player);
+        ((com.neohide.neohide.NeoHide) plugin).getSliceScheduler().submitPlayers("permission-check", this::checkPlayerPermissions);
+    }
+
+    /**
+     * Проверка в каждом тике: сначала помеченные игроки, затем несколько
+     * игроков из круговой очереди, чтобы не проверять всех в один тик
+     */
+    public void tick() {
+        if (!configManager.isPermissionProtectionEnabled()) {
+            return;
+        }
+
+        if (!dirtyPlayers.isEmpty()) {
+            List<UUID> dirty = new ArrayList<>(dirtyPlayers);
+            dirtyPlayers.clear();
+            for (UUID uuid : dirty) {
+                Player player = Bukkit.getPlayer(uuid);
+                if (player != null) {
+                    checkPlayerPermissions(player);
+                }
+            }
+        }
+
+        int budget = configManager.getPermissionCheckPlayersPerTick();
+        if (sweepQueue.isEmpty()) {
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                sweepQueue.add(player.getUniqueId());
+            }
+        }
+        for (int i = 0; i < budget && !sweepQueue.isEmpty(); i++) {
+            Player player = Bukkit.getPlayer(sweepQueue.poll());
+            if (player != null) {
+                checkPlayerPermissions(player);
+            }
         }
     }
 
+    /**
+     * Проверить игрока в ближайший тик
+     */
+    public void markDirty(Player player) {
+        dirtyPlayers.add(player.getUniqueId());
+    }
+
     private void checkPlayerPermissions(Player player) {
-        // Проверяем, не получил ли игрок защищенные права
-        Set<String> currentPerms = new HashSet<>();
-        for (PermissionAttachmentInfo entry : player.getEffectivePermissions()) {
-            currentPerms.add(entry.getPermission().toLowerCase());
+        // Защита уже применена, но пересчёт отложен до конца тика — пересчитываем сейчас,
+        // иначе проверка увидит права до изменения
+        if (pendingRecalculation.remove(player.getUniqueId())) {
+            player.recalculatePermissions();
+        }
+
+        // Список защищённых прав изменился — прежние проверки не в счёт
+        ListSnapshot lists = configManager.getLists();
+        if (lists.getVersion() != fingerprintsVersion) {
+            fingerprints.clear();
+            fingerprintsVersion = lists.getVersion();
+        }
+
+        Set<PermissionAttachmentInfo> effective = player.getEffectivePermissions();
+
+        // Набор прав не менялся с прошлой проверки — сравнивать нечего
+        long fingerprint = fingerprint(effective);
+        Long previous = fingerprints.put(player.getUniqueId(), fingerprint);
+        if (previous != null && previous == fingerprint) {
+            return;
+        }
+
+        PermissionTrie protectedTrie = lists.getProtectedPermissionTrie();
+        if (protectedTrie.isEmpty()) {
+            return;
         }
 
         // Получаем оригинальные права
-        Set<String> original = originalPermissions.getOrDefault(player.getUniqueId(), new HashSet<>());
+        CompactIntSet original = originalPermissions.getOrDefault(player.getUniqueId(), CompactIntSet.empty());
 
-        // Находим новые права, которых не было в оригинале
-        Set<String> newPerms = new HashSet<>(currentPerms);
-        newPerms.removeAll(original);
+        // Один проход по выданным правам: защищённое право, которого не было в оригинале
+        for (PermissionAttachmentInfo entry : effective) {
+            if (!entry.getValue() || !protectedTrie.matches(entry.getPermission())) {
+                continue;
+            }
 
-        // Проверяем, есть ли среди них защищенные
-        for (String protectedPerm : configManager.getProtectedPermissions()) {
-            if (newPerms.contains(protectedPerm.toLowerCase())) {
+            String permission = entry.getPermission().toLowerCase();
+            if (!original.contains(permissionDictionary.idOf(permission))) {
                 // Игрок получил защищенное право - забираем его
-                logSecurityAlert(player, protectedPerm);
-                applyProtection(player); // Применяем защиту заново
+                logSecurityAlert(player, permission);
+                applyProtection(player, true); // Применяем защиту заново
                 break;
             }
         }
     }
 
+    /**
+     * 64-битный отпечаток набора прав, не зависящий от порядка.
+     * Строится по имени и значению каждого права без выделения памяти.
+     */
+    private static long fingerprint(Set<PermissionAttachmentInfo> effective) {
+        long sum = 0;
+        long xor = 0;
+        for (PermissionAttachmentInfo entry : effective) {
+            // FNV-1a по символам в нижнем регистре
+            String permission = entry.getPermission();
+            long hash = 0xcbf29ce484222325L;
+            for (int i = 0; i < permission.length(); i++) {
+                hash ^= Character.toLowerCase(permission.charAt(i));
+                hash *= 0x100000001b3L;
+            }
+            hash ^= entry.getValue() ? 0x9e3779b97f4a7c15L : 0;
+
+            // Перемешивание (финализатор SplitMix64), чтобы сумма и xor не гасили друг друга
+            hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+            hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+            hash ^= hash >>> 31;
+
+            sum += hash;
+            xor ^= hash;
+        }
+        return sum * 31 + xor + effective.size();
+    }
+
     private void logSecurityAlert(Player player, String permission) {
         String message = String.format("[SECURITY] Игрок %s получил защищенное право: %s",
                 player.getName(), permission);
 
         plugin.getLogger().warning(message);
 
+        ((com.neohide.neohide.NeoHide) plugin).getDatabaseManager().logViolation(
+                player.getUniqueId(), player.getName(), "PROTECTED_PERMISSION", 3, permission);
+
+        LiveEventBus eventBus = ((com.neohide.neohide.NeoHide) plugin).getEventBus();
+        if (eventBus.hasSubscribers()) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("player", player.getName());
+            data.put("uuid", player.getUniqueId().toString());
+            data.put("permission", permission);
+            eventBus.publish("security_alert", data);
+        }
+
         // Оповещение админов в игре
         for (Player online : Bukkit.getOnlinePlayers()) {
             if (online.hasPermission("neohide.alerts")) {
@@ -131,6 +369,27 @@ public class PermissionProtection {
         }
     }
 
+    /**
+     * Память, занятая сохранёнными правами игроков (оценка)
+     */
+    public Map<String, Object> getMemoryStats() {
+        long setBytes = 0;
+        long entries = 0;
+        for (CompactIntSet set : originalPermissions.values()) {
+            setBytes += set.sizeInBytes();
+            entries += set.cardinality();
+        }
+
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("players", originalPermissions.size());
+        stats.put("distinct_permissions", permissionDictionary.size());
+        stats.put("entries", entries);
+        stats.put("dictionary_bytes", permissionDictionary.sizeInBytes());
+        stats.put("sets_bytes", setBytes);
+        stats.put("total_bytes", permissionDictionary.sizeInBytes() + setBytes);
+        return stats;
+    }
+
     public void onPlayerJoin(Player player) {
         saveOriginalPermissions(player);
         applyProtection(player);
@@ -139,5 +398,7 @@ public class PermissionProtection {
     public void onPlayerQuit(Player player) {
         removeProtection(player);
         originalPermissions.remove(player.getUniqueId());
+        fingerprints.remove(player.getUniqueId());
+        dirtyPlayers.remove(player.getUniqueId());
     }
 }
\ No newline at end of file
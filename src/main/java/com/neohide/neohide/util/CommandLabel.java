@@ -0,0 +1,123 @@
+package com.neohide.neohide.util;
+
+/**
+ * Метка команды из сообщения игрока, без копирования строки.
+ *
+ * Сообщение просматривается один раз: ведущие '/' пропускаются, метка
+ * заканчивается на первом пробеле, "namespace:label" разбирается по первому ':'.
+ * Представление через CharSequence отдаёт ASCII в нижнем регистре.
+ * Экземпляр переиспользуется, поэтому берётся через {@link #parse(String)}.
+ */
+public final class CommandLabel implements CharSequence {
+
+    private static final ThreadLocal<CommandLabel> LOCAL = ThreadLocal.withInitial(CommandLabel::new);
+
+    private String message = "";
+    private int start;
+    private int end;
+    private int colon = -1;
+
+    private CommandLabel() {
+    }
+
+    /**
+     * Разобрать сообщение в переиспользуемый экземпляр текущего потока
+     */
+    public static CommandLabel parse(String message) {
+        CommandLabel label = LOCAL.get();
+        label.reset(message);
+        return label;
+    }
+
+    private void reset(String message) {
+        this.message = message;
+        this.colon = -1;
+
+        int length = message.length();
+        int i = 0;
+        while (i < length && message.charAt(i) == '/') {
+            i++;
+        }
+        this.start = i;
+
+        for (; i < length; i++) {
+            char c = message.charAt(i);
+            if (c == ' ') {
+                break;
+            }
+            if (c == ':' && colon < 0) {
+                colon = i;
+            }
+        }
+        this.end = i;
+    }
+
+    /**
+     * Есть ли у метки пространство имён (например, minecraft:op)
+     */
+    public boolean hasNamespace() {
+        return colon >= 0;
+    }
+
+    /**
+     * Начало метки без пространства имён в исходном сообщении
+     */
+    public int labelStart() {
+        return colon >= 0 ? colon + 1 : start;
+    }
+
+    public int start() {
+        return start;
+    }
+
+    public int end() {
+        return end;
+    }
+
+    public String message() {
+        return message;
+    }
+
+    /**
+     * Метка без пространства имён в виде строки
+     */
+    public String label() {
+        return materialize(labelStart());
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        char c = message.charAt(start + index);
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        return toString().subSequence(from, to);
+    }
+
+    /**
+     * Полная метка (с пространством имён) в виде строки, как раньше
+     * возвращал split(" ")[0].toLowerCase().replace("/", "")
+     */
+    @Override
+    public String toString() {
+        return materialize(start);
+    }
+
+    private String materialize(int from) {
+        StringBuilder builder = new StringBuilder(end - from);
+        for (int i = from; i < end; i++) {
+            char c = message.charAt(i);
+            if (c != '/') {
+                builder.append(c);
+            }
+        }
+        return builder.toString().toLowerCase();
+    }
+}
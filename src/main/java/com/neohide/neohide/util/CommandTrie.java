@@ -0,0 +1,157 @@
+package com.neohide.neohide.util;
+
+import java.util.*;
+
+/**
+ * Неизменяемое префиксное дерево скрытых команд.
+ *
+ * Сохраняет семантику старой проверки: команда скрыта, если она начинается
+ * с одной из скрытых записей или сама является префиксом записи.
+ * Поиск не выделяет память, дерево пересобирается целиком при изменении списка.
+ */
+public final class CommandTrie {
+
+    private static final CommandTrie EMPTY = compile(Collections.emptyList());
+
+    // Узлы хранятся плоско: дети узла i лежат в edgeChars/edgeTargets
+    // в диапазоне [childStart[i], childStart[i] + childCount[i]), отсортированы по символу
+    private final int[] childStart;
+    private final int[] childCount;
+    private final boolean[] terminal;
+    private final char[] edgeChars;
+    private final int[] edgeTargets;
+    private final int size;
+
+    private CommandTrie(int[] childStart, int[] childCount, boolean[] terminal,
+                        char[] edgeChars, int[] edgeTargets, int size) {
+        this.childStart = childStart;
+        this.childCount = childCount;
+        this.terminal = terminal;
+        this.edgeChars = edgeChars;
+        this.edgeTargets = edgeTargets;
+        this.size = size;
+    }
+
+    public static CommandTrie empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Собрать дерево из списка скрытых команд
+     */
+    public static CommandTrie compile(Collection<String> commands) {
+        BuildNode root = new BuildNode();
+        int size = 0;
+        for (String command : commands) {
+            if (command == null) {
+                continue;
+            }
+            BuildNode node = root;
+            for (int i = 0; i < command.length(); i++) {
+                node = node.children.computeIfAbsent(command.charAt(i), k -> new BuildNode());
+            }
+            if (!node.terminal) {
+                node.terminal = true;
+                size++;
+            }
+        }
+
+        // Раскладываем дерево в массивы обходом в ширину
+        List<BuildNode> order = new ArrayList<>();
+        order.add(root);
+        for (int i = 0; i < order.size(); i++) {
+            order.addAll(order.get(i).children.values());
+        }
+
+        int nodeCount = order.size();
+        int[] childStart = new int[nodeCount];
+        int[] childCount = new int[nodeCount];
+        boolean[] terminal = new boolean[nodeCount];
+        char[] edgeChars = new char[nodeCount - 1];
+        int[] edgeTargets = new int[nodeCount - 1];
+
+        int edge = 0;
+        int next = 1;
+        for (int i = 0; i < nodeCount; i++) {
+            BuildNode node = order.get(i);
+            terminal[i] = node.terminal;
+            childStart[i] = edge;
+            childCount[i] = node.children.size();
+            for (Character c : node.children.keySet()) {
+                edgeChars[edge] = c;
+                edgeTargets[edge] = next++;
+                edge++;
+            }
+        }
+
+        return new CommandTrie(childStart, childCount, terminal, edgeChars, edgeTargets, size);
+    }
+
+    /**
+     * Проверка, скрыта ли команда.
+     * Символы '/' пропускаются, регистр приводится к нижнему на лету.
+     */
+    public boolean matches(CharSequence command) {
+        return matches(command, 0, command.length());
+    }
+
+    /**
+     * Проверка подстроки command[start, end) без её копирования
+     */
+    public boolean matches(CharSequence command, int start, int end) {
+        if (size == 0) {
+            return false;
+        }
+
+        int node = 0;
+        for (int i = start; i < end; i++) {
+            // Команда начинается со скрытой записи
+            if (terminal[node]) {
+                return true;
+            }
+
+            char c = command.charAt(i);
+            if (c == '/') {
+                continue;
+            }
+
+            node = child(node, Character.toLowerCase(c));
+            if (node < 0) {
+                return false;
+            }
+        }
+
+        // Команда целиком прошла по дереву — она сама префикс какой-то записи
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private int child(int node, char c) {
+        int low = childStart[node];
+        int high = low + childCount[node] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char midChar = edgeChars[mid];
+            if (midChar < c) {
+                low = mid + 1;
+            } else if (midChar > c) {
+                high = mid - 1;
+            } else {
+                return edgeTargets[mid];
+            }
+        }
+        return -1;
+    }
+
+    private static final class BuildNode {
+        private final TreeMap<Character, BuildNode> children = new TreeMap<>();
+        private boolean terminal;
+    }
+}
@@ -0,0 +1,123 @@
+package com.neohide.neohide.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ограниченный кэш результатов isCommandHidden по нормализованной метке команды.
+ *
+ * Таблица фиксированного размера с прямой адресацией: при коллизии старая запись
+ * вытесняется, записи старше TTL считаются устаревшими. Каждая запись помнит
+ * поколение списка скрытых команд — после его изменения она просто не совпадёт.
+ * Попадание в кэш не выделяет память.
+ */
+public final class CommandVerdictCache {
+
+    private final Entry[] table;
+    private final int mask;
+    private final long ttlNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CommandVerdictCache(int maxSize, long ttl, TimeUnit unit) {
+        int capacity = Integer.highestOneBit(Math.max(16, Math.min(maxSize, 1 << 20)) - 1) << 1;
+        this.table = new Entry[capacity];
+        this.mask = capacity - 1;
+        this.ttlNanos = unit.toNanos(ttl);
+    }
+
+    /**
+     * Получить сохранённый вердикт.
+     *
+     * @return 1 — скрыта, 0 — не скрыта, -1 — нет актуальной записи
+     */
+    public int get(CharSequence label, long generation) {
+        int hash = hash(label);
+        Entry entry = table[hash & mask];
+
+        if (entry != null && entry.hash == hash && entry.generation == generation
+                && !isExpired(entry, System.nanoTime()) && contentEquals(entry.label, label)) {
+            hits.increment();
+            return entry.hidden ? 1 : 0;
+        }
+
+        misses.increment();
+        return -1;
+    }
+
+    /**
+     * Сохранить вердикт, вытеснив запись из той же ячейки
+     */
+    public void put(CharSequence label, long generation, boolean hidden) {
+        int hash = hash(label);
+        int index = hash & mask;
+        long now = System.nanoTime();
+
+        Entry previous = table[index];
+        if (previous != null && previous.generation == generation
+                && (isExpired(previous, now) || !contentEquals(previous.label, label))) {
+            evictions.increment();
+        }
+
+        table[index] = new Entry(new StringBuilder(label).toString(), hash, generation, hidden, now + ttlNanos);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int getCapacity() {
+        return table.length;
+    }
+
+    private boolean isExpired(Entry entry, long now) {
+        return now - entry.expiresAt > 0;
+    }
+
+    private static int hash(CharSequence label) {
+        int h = 0;
+        for (int i = 0; i < label.length(); i++) {
+            h = 31 * h + label.charAt(i);
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static boolean contentEquals(String key, CharSequence label) {
+        int length = key.length();
+        if (length != label.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key.charAt(i) != label.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static final class Entry {
+        private final String label;
+        private final int hash;
+        private final long generation;
+        private final boolean hidden;
+        private final long expiresAt;
+
+        private Entry(String label, int hash, long generation, boolean hidden, long expiresAt) {
+            this.label = label;
+            this.hash = hash;
+            this.generation = generation;
+            this.hidden = hidden;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
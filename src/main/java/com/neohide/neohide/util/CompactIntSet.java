@@ -0,0 +1,123 @@
+package com.neohide.neohide.util;
+
+import java.util.*;
+
+/**
+ * Неизменяемое сжатое множество неотрицательных int в духе RoaringBitmap.
+ *
+ * Значения делятся на блоки по старшим 16 битам. Редкий блок (до 4096 значений)
+ * хранится отсортированным массивом младших 16 бит, плотный — битовой картой
+ * на 65536 бит (8 КБ). Так множество из нескольких тысяч плотных id занимает
+ * несколько килобайт вместо HashSet со строками и узлами.
+ */
+public final class CompactIntSet {
+
+    private static final CompactIntSet EMPTY = new CompactIntSet(new char[0], new Object[0], 0);
+
+    // Блок массивом выгоднее, пока он меньше битовой карты
+    private static final int ARRAY_MAX = 4096;
+    private static final int BITMAP_WORDS = 1024;
+
+    private final char[] keys;
+    // char[] (отсортированные младшие биты) или long[BITMAP_WORDS]
+    private final Object[] containers;
+    private final int cardinality;
+
+    private CompactIntSet(char[] keys, Object[] containers, int cardinality) {
+        this.keys = keys;
+        this.containers = containers;
+        this.cardinality = cardinality;
+    }
+
+    public static CompactIntSet empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Собрать множество из первых count значений массива (массив сортируется на месте)
+     */
+    public static CompactIntSet of(int[] values, int count) {
+        if (count == 0) {
+            return EMPTY;
+        }
+        Arrays.sort(values, 0, count);
+
+        List<Character> keys = new ArrayList<>();
+        List<Object> containers = new ArrayList<>();
+        int cardinality = 0;
+
+        int start = 0;
+        while (start < count) {
+            int high = values[start] >>> 16;
+            int end = start;
+            while (end < count && values[end] >>> 16 == high) {
+                end++;
+            }
+
+            // Уникальные младшие биты блока
+            char[] low = new char[end - start];
+            int size = 0;
+            for (int i = start; i < end; i++) {
+                char value = (char) values[i];
+                if (size == 0 || low[size - 1] != value) {
+                    low[size++] = value;
+                }
+            }
+
+            keys.add((char) high);
+            if (size <= ARRAY_MAX) {
+                containers.add(size == low.length ? low : Arrays.copyOf(low, size));
+            } else {
+                long[] bitmap = new long[BITMAP_WORDS];
+                for (int i = 0; i < size; i++) {
+                    bitmap[low[i] >>> 6] |= 1L << low[i];
+                }
+                containers.add(bitmap);
+            }
+            cardinality += size;
+            start = end;
+        }
+
+        char[] keyArray = new char[keys.size()];
+        for (int i = 0; i < keyArray.length; i++) {
+            keyArray[i] = keys.get(i);
+        }
+        return new CompactIntSet(keyArray, containers.toArray(), cardinality);
+    }
+
+    public boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int index = Arrays.binarySearch(keys, (char) (value >>> 16));
+        if (index < 0) {
+            return false;
+        }
+
+        Object container = containers[index];
+        char low = (char) value;
+        if (container instanceof long[]) {
+            return (((long[]) container)[low >>> 6] & (1L << low)) != 0;
+        }
+        return Arrays.binarySearch((char[]) container, low) >= 0;
+    }
+
+    public int cardinality() {
+        return cardinality;
+    }
+
+    /**
+     * Примерный размер в памяти, байт
+     */
+    public long sizeInBytes() {
+        long bytes = 16 + 8 + 8 + 4;
+        bytes += 16 + keys.length * 2L;
+        bytes += 16 + containers.length * 4L;
+        for (Object container : containers) {
+            bytes += container instanceof long[]
+                    ? 16 + BITMAP_WORDS * 8L
+                    : 16 + ((char[]) container).length * 2L;
+        }
+        return bytes;
+    }
+}
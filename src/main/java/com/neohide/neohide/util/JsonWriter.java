@@ -0,0 +1,181 @@
+package com.neohide.neohide.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.*;
+
+/**
+ * Потоковая запись JSON прямо в OutputStream в UTF-8.
+ *
+ * Промежуточная строка не строится: символы кодируются в буфер потока
+ * (один на поток, переиспользуется), который сбрасывается при заполнении.
+ * Поддерживаются Map, Iterable, массивы объектов, строки, числа, Boolean,
+ * даты (ISO-8601 UTC) и null; прочие объекты пишутся как строка toString().
+ */
+public final class JsonWriter {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int position;
+
+    public JsonWriter(OutputStream out) {
+        this.out = out;
+        this.buffer = BUFFERS.get();
+    }
+
+    /**
+     * Записать значение целиком
+     */
+    public JsonWriter write(Object value) throws IOException {
+        if (value == null) {
+            writeAscii("null");
+        } else if (value instanceof CharSequence) {
+            writeString((CharSequence) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            // NaN и бесконечность в JSON не представимы
+            writeAscii(Double.isNaN(number) || Double.isInfinite(number) ? "null" : value.toString());
+        } else if (value instanceof Number || value instanceof Boolean) {
+            writeAscii(value.toString());
+        } else if (value instanceof Date) {
+            writeString(((Date) value).toInstant().toString());
+        } else if (value instanceof Map) {
+            writeMap((Map<?, ?>) value);
+        } else if (value instanceof Iterable) {
+            writeIterable((Iterable<?>) value);
+        } else if (value instanceof Object[]) {
+            writeIterable(Arrays.asList((Object[]) value));
+        } else {
+            writeString(value.toString());
+        }
+        return this;
+    }
+
+    /**
+     * Перевод строки — разделитель записей в NDJSON
+     */
+    public JsonWriter newLine() throws IOException {
+        writeByte('\n');
+        return this;
+    }
+
+    /**
+     * Сбросить буфер в поток
+     */
+    public void flush() throws IOException {
+        if (position > 0) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+        out.flush();
+    }
+
+    private void writeMap(Map<?, ?> map) throws IOException {
+        writeByte('{');
+        boolean first = true;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            if (!first) {
+                writeByte(',');
+            }
+            writeString(String.valueOf(entry.getKey()));
+            writeByte(':');
+            write(entry.getValue());
+            first = false;
+        }
+        writeByte('}');
+    }
+
+    private void writeIterable(Iterable<?> items) throws IOException {
+        writeByte('[');
+        boolean first = true;
+        for (Object item : items) {
+            if (!first) {
+                writeByte(',');
+            }
+            write(item);
+            first = false;
+        }
+        writeByte(']');
+    }
+
+    private void writeString(CharSequence value) throws IOException {
+        writeByte('"');
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    writeByte('\\');
+                    writeByte('"');
+                    break;
+                case '\\':
+                    writeByte('\\');
+                    writeByte('\\');
+                    break;
+                case '\n':
+                    writeByte('\\');
+                    writeByte('n');
+                    break;
+                case '\r':
+                    writeByte('\\');
+                    writeByte('r');
+                    break;
+                case '\t':
+                    writeByte('\\');
+                    writeByte('t');
+                    break;
+                default:
+                    if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+                        writeUnicodeEscape(c);
+                    } else if (c < 0x80) {
+                        writeByte(c);
+                    } else if (c < 0x800) {
+                        writeByte(0xC0 | (c >> 6));
+                        writeByte(0x80 | (c & 0x3F));
+                    } else if (Character.isHighSurrogate(c) && i + 1 < length
+                            && Character.isLowSurrogate(value.charAt(i + 1))) {
+                        int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                        writeByte(0xF0 | (codePoint >> 18));
+                        writeByte(0x80 | ((codePoint >> 12) & 0x3F));
+                        writeByte(0x80 | ((codePoint >> 6) & 0x3F));
+                        writeByte(0x80 | (codePoint & 0x3F));
+                    } else if (Character.isSurrogate(c)) {
+                        // Непарный суррогат в UTF-8 не кодируется
+                        writeUnicodeEscape(c);
+                    } else {
+                        writeByte(0xE0 | (c >> 12));
+                        writeByte(0x80 | ((c >> 6) & 0x3F));
+                        writeByte(0x80 | (c & 0x3F));
+                    }
+            }
+        }
+        writeByte('"');
+    }
+
+    private void writeUnicodeEscape(char c) throws IOException {
+        writeByte('\\');
+        writeByte('u');
+        writeByte(HEX[(c >> 12) & 0xF]);
+        writeByte(HEX[(c >> 8) & 0xF]);
+        writeByte(HEX[(c >> 4) & 0xF]);
+        writeByte(HEX[c & 0xF]);
+    }
+
+    private void writeAscii(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            writeByte(value.charAt(i));
+        }
+    }
+
+    private void writeByte(int b) throws IOException {
+        if (position == buffer.length) {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+        buffer[position++] = (byte) b;
+    }
+}
@@ -0,0 +1,92 @@
+package com.neohide.neohide.util;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма задержек с фиксированными границами корзин (мс).
+ *
+ * Запись — один инкремент LongAdder без блокировок. Перцентили оцениваются
+ * по верхней границе корзины, поэтому точны с точностью до корзины.
+ */
+public final class LatencyHistogram {
+
+    // Верхние границы корзин в миллисекундах, последняя корзина — всё, что больше
+    private static final long[] BOUNDS_MILLIS = {1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS_MILLIS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+        int index = 0;
+        while (index < BOUNDS_MILLIS.length && millis >= BOUNDS_MILLIS[index]) {
+            index++;
+        }
+        buckets[index].increment();
+        count.increment();
+        totalNanos.add(nanos);
+
+        long max;
+        while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+            // повторяем, пока не обновим максимум
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Снимок: количество, среднее, максимум, p50/p95/p99 и счётчики корзин "lt_<мс>"
+     */
+    public Map<String, Object> snapshot() {
+        long[] counts = new long[buckets.length];
+        long total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", total);
+        result.put("avg_ms", total > 0 ? TimeUnit.NANOSECONDS.toMillis(totalNanos.sum()) / (double) total : 0.0);
+        result.put("max_ms", TimeUnit.NANOSECONDS.toMillis(maxNanos.get()));
+        result.put("p50_ms", percentile(counts, total, 0.50));
+        result.put("p95_ms", percentile(counts, total, 0.95));
+        result.put("p99_ms", percentile(counts, total, 0.99));
+
+        Map<String, Object> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < BOUNDS_MILLIS.length; i++) {
+            histogram.put("lt_" + BOUNDS_MILLIS[i], counts[i]);
+        }
+        histogram.put("inf", counts[BOUNDS_MILLIS.length]);
+        result.put("buckets", histogram);
+        return result;
+    }
+
+    private long percentile(long[] counts, long total, double quantile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS_MILLIS.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return BOUNDS_MILLIS[i];
+            }
+        }
+        return TimeUnit.NANOSECONDS.toMillis(maxNanos.get());
+    }
+}
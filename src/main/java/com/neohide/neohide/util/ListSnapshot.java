@@ -0,0 +1,108 @@
+package com.neohide.neohide.util;
+
+import java.util.*;
+
+/**
+ * Неизменяемый снимок списков конфигурации: скрытые команды, защищённые права
+ * и псевдонимы команд.
+ *
+ * Снимок публикуется через одну volatile-ссылку, поэтому читатель из любого
+ * потока видит согласованное состояние без копирования. Изменение списка
+ * создаёт новый снимок со следующей версией, старый остаётся нетронутым.
+ */
+public final class ListSnapshot {
+
+    private static final ListSnapshot EMPTY = of(0,
+            Collections.emptyList(), Collections.emptyList(), Collections.emptyMap());
+
+    private final long version;
+    private final List<String> hiddenCommands;
+    private final CommandTrie hiddenCommandTrie;
+    private final List<String> protectedPermissions;
+    private final PermissionTrie protectedPermissionTrie;
+    private final Map<String, String> fakeAliases;
+
+    // Деревья передаются готовыми: при изменении одного списка второе дерево не пересобирается
+    private ListSnapshot(long version, List<String> hiddenCommands, CommandTrie hiddenCommandTrie,
+                         List<String> protectedPermissions, PermissionTrie protectedPermissionTrie,
+                         Map<String, String> fakeAliases) {
+        this.version = version;
+        this.hiddenCommands = hiddenCommands;
+        this.hiddenCommandTrie = hiddenCommandTrie;
+        this.protectedPermissions = protectedPermissions;
+        this.protectedPermissionTrie = protectedPermissionTrie;
+        this.fakeAliases = fakeAliases;
+    }
+
+    public static ListSnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Собрать снимок из списков конфигурации (списки копируются)
+     */
+    public static ListSnapshot of(long version, Collection<String> hiddenCommands,
+                                  Collection<String> protectedPermissions, Map<String, String> fakeAliases) {
+        List<String> hidden = copy(hiddenCommands);
+        List<String> permissions = copy(protectedPermissions);
+        return new ListSnapshot(version, hidden, CommandTrie.compile(hidden),
+                permissions, PermissionTrie.compile(permissions),
+                Collections.unmodifiableMap(new LinkedHashMap<>(fakeAliases)));
+    }
+
+    /**
+     * Новый снимок с другим списком скрытых команд
+     */
+    public ListSnapshot withHiddenCommands(Collection<String> commands) {
+        List<String> hidden = copy(commands);
+        return new ListSnapshot(version + 1, hidden, CommandTrie.compile(hidden),
+                protectedPermissions, protectedPermissionTrie, fakeAliases);
+    }
+
+    /**
+     * Новый снимок с другим списком защищённых прав
+     */
+    public ListSnapshot withProtectedPermissions(Collection<String> permissions) {
+        List<String> protectedList = copy(permissions);
+        return new ListSnapshot(version + 1, hiddenCommands, hiddenCommandTrie,
+                protectedList, PermissionTrie.compile(protectedList), fakeAliases);
+    }
+
+    /**
+     * Версия снимка, растёт при каждом изменении любого списка
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public List<String> getHiddenCommands() {
+        return hiddenCommands;
+    }
+
+    public CommandTrie getHiddenCommandTrie() {
+        return hiddenCommandTrie;
+    }
+
+    public List<String> getProtectedPermissions() {
+        return protectedPermissions;
+    }
+
+    public PermissionTrie getProtectedPermissionTrie() {
+        return protectedPermissionTrie;
+    }
+
+    public Map<String, String> getFakeAliases() {
+        return fakeAliases;
+    }
+
+    /**
+     * Защищено ли право: точное совпадение или попадание под wildcard
+     */
+    public boolean isPermissionProtected(CharSequence permission) {
+        return protectedPermissionTrie.matches(permission);
+    }
+
+    private static List<String> copy(Collection<String> values) {
+        return Collections.unmodifiableList(new ArrayList<>(values));
+    }
+}
@@ -0,0 +1,57 @@
+package com.neohide.neohide.util;
+
+import java.util.*;
+
+/**
+ * Общий словарь прав: каждое различное право (в нижнем регистре) получает
+ * плотный int id. Строка хранится один раз на весь сервер, а наборы прав
+ * игроков — множествами id (см. CompactIntSet).
+ *
+ * Id не освобождаются: число различных прав ограничено плагинами сервера.
+ * Используется только из основного потока.
+ */
+public final class PermissionDictionary {
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private long stringBytes;
+
+    /**
+     * Id права, при необходимости добавляет его в словарь
+     */
+    public int intern(String permission) {
+        String lower = permission.toLowerCase();
+        Integer id = ids.get(lower);
+        if (id == null) {
+            id = ids.size();
+            ids.put(lower, id);
+            // Заголовок String и массив байт (Latin-1 в компактных строках)
+            stringBytes += 24 + align(16 + lower.length());
+        }
+        return id;
+    }
+
+    /**
+     * Id права в нижнем регистре или -1, если его нет в словаре
+     */
+    public int idOf(String lowerCasePermission) {
+        Integer id = ids.get(lowerCasePermission);
+        return id != null ? id : -1;
+    }
+
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * Примерный размер в памяти, байт: строки, узлы и таблица HashMap, Integer
+     */
+    public long sizeInBytes() {
+        int count = ids.size();
+        long integers = Math.max(0, count - 128) * 16L; // кэш Integer покрывает -128..127
+        return stringBytes + count * (32L + 8L) + integers;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
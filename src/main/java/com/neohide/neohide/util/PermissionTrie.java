@@ -0,0 +1,162 @@
+package com.neohide.neohide.util;
+
+import java.util.*;
+
+/**
+ * Неизменяемое дерево защищённых прав по сегментам, разделённым точкой.
+ *
+ * Запись "a.b.c" защищает только само право, запись "a.b.*" — право "a.b"
+ * и всё, что под ним ("a.b.c", "a.b.c.d"), но не "a.bc". Поиск идёт по
+ * сегментам исходной строки без выделения памяти, регистр не учитывается.
+ */
+public final class PermissionTrie {
+
+    private static final PermissionTrie EMPTY = compile(Collections.emptyList());
+
+    private static final class Node {
+        // Сегменты детей в нижнем регистре, отсортированы
+        private final String[] segments;
+        private final Node[] children;
+        // Здесь заканчивается точная запись
+        private final boolean exact;
+        // Здесь заканчивается префикс записи вида "prefix.*"
+        private final boolean wildcard;
+
+        private Node(String[] segments, Node[] children, boolean exact, boolean wildcard) {
+            this.segments = segments;
+            this.children = children;
+            this.exact = exact;
+            this.wildcard = wildcard;
+        }
+
+        private Node child(CharSequence permission, int start, int end) {
+            int low = 0;
+            int high = segments.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compare(segments[mid], permission, start, end);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid - 1;
+                } else {
+                    return children[mid];
+                }
+            }
+            return null;
+        }
+    }
+
+    private final Node root;
+    private final int size;
+
+    private PermissionTrie(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    public static PermissionTrie empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Собрать дерево из списка защищённых прав
+     */
+    public static PermissionTrie compile(Collection<String> permissions) {
+        BuildNode buildRoot = new BuildNode();
+        int size = 0;
+        for (String permission : permissions) {
+            if (permission == null || permission.isEmpty()) {
+                continue;
+            }
+
+            String lower = permission.toLowerCase();
+            boolean wildcard = lower.endsWith(".*");
+            if (wildcard) {
+                lower = lower.substring(0, lower.length() - 2);
+            }
+
+            BuildNode node = buildRoot;
+            for (String segment : lower.split("\\.", -1)) {
+                node = node.children.computeIfAbsent(segment, k -> new BuildNode());
+            }
+            if (wildcard ? !node.wildcard : !node.exact) {
+                size++;
+            }
+            if (wildcard) {
+                node.wildcard = true;
+            } else {
+                node.exact = true;
+            }
+        }
+        return new PermissionTrie(buildRoot.freeze(), size);
+    }
+
+    /**
+     * Защищено ли право: точная запись или запись "prefix.*" для одного из его префиксов
+     */
+    public boolean matches(CharSequence permission) {
+        if (size == 0) {
+            return false;
+        }
+
+        Node node = root;
+        int length = permission.length();
+        int start = 0;
+        while (true) {
+            int end = start;
+            while (end < length && permission.charAt(end) != '.') {
+                end++;
+            }
+
+            node = node.child(permission, start, end);
+            if (node == null) {
+                return false;
+            }
+            if (node.wildcard) {
+                return true;
+            }
+            if (end == length) {
+                return node.exact;
+            }
+            start = end + 1;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Сравнение сегмента с подстрокой права [start, end) с приведением к нижнему регистру
+    private static int compare(String segment, CharSequence permission, int start, int end) {
+        int length = end - start;
+        int common = Math.min(segment.length(), length);
+        for (int i = 0; i < common; i++) {
+            char a = segment.charAt(i);
+            char b = Character.toLowerCase(permission.charAt(start + i));
+            if (a != b) {
+                return a - b;
+            }
+        }
+        return segment.length() - length;
+    }
+
+    private static final class BuildNode {
+        private final Map<String, BuildNode> children = new TreeMap<>();
+        private boolean exact;
+        private boolean wildcard;
+
+        private Node freeze() {
+            String[] segments = children.keySet().toArray(new String[0]);
+            Node[] frozen = new Node[segments.length];
+            for (int i = 0; i < segments.length; i++) {
+                frozen[i] = children.get(segments[i]).freeze();
+            }
+            return new Node(segments, frozen, exact, wildcard);
+        }
+    }
+}
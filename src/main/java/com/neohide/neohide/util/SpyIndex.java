@@ -0,0 +1,91 @@
+package com.neohide.neohide.util;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Двусторонний индекс шпионажа: шпион → цели и цель → шпионы.
+ *
+ * Оба направления ищутся за O(1). Изменения сериализуются на самом индексе,
+ * поэтому два отображения всегда согласованы между собой; чтение идёт без
+ * блокировок из любого потока. Пустые множества удаляются сразу.
+ */
+public final class SpyIndex {
+
+    private final Map<UUID, Set<UUID>> targetsBySpy = new ConcurrentHashMap<>();
+    private final Map<UUID, Set<UUID>> spiesByTarget = new ConcurrentHashMap<>();
+
+    /**
+     * @return true, если связи ещё не было
+     */
+    public synchronized boolean add(UUID spy, UUID target) {
+        boolean added = targetsBySpy.computeIfAbsent(spy, k -> ConcurrentHashMap.newKeySet()).add(target);
+        spiesByTarget.computeIfAbsent(target, k -> ConcurrentHashMap.newKeySet()).add(spy);
+        return added;
+    }
+
+    /**
+     * @return true, если связь была
+     */
+    public synchronized boolean remove(UUID spy, UUID target) {
+        boolean removed = unlink(targetsBySpy, spy, target);
+        unlink(spiesByTarget, target, spy);
+        return removed;
+    }
+
+    public boolean contains(UUID spy, UUID target) {
+        Set<UUID> targets = targetsBySpy.get(spy);
+        return targets != null && targets.contains(target);
+    }
+
+    /**
+     * За кем следит шпион (неизменяемое представление)
+     */
+    public Set<UUID> targetsOf(UUID spy) {
+        Set<UUID> targets = targetsBySpy.get(spy);
+        return targets != null ? Collections.unmodifiableSet(targets) : Collections.emptySet();
+    }
+
+    /**
+     * Кто следит за целью (неизменяемое представление)
+     */
+    public Set<UUID> spiesOf(UUID target) {
+        Set<UUID> spies = spiesByTarget.get(target);
+        return spies != null ? Collections.unmodifiableSet(spies) : Collections.emptySet();
+    }
+
+    /**
+     * Убрать игрока из обеих ролей. Затрагиваются только связанные с ним записи.
+     */
+    public synchronized void removePlayer(UUID player) {
+        Set<UUID> targets = targetsBySpy.remove(player);
+        if (targets != null) {
+            for (UUID target : targets) {
+                unlink(spiesByTarget, target, player);
+            }
+        }
+
+        Set<UUID> spies = spiesByTarget.remove(player);
+        if (spies != null) {
+            for (UUID spy : spies) {
+                unlink(targetsBySpy, spy, player);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        targetsBySpy.clear();
+        spiesByTarget.clear();
+    }
+
+    private static boolean unlink(Map<UUID, Set<UUID>> index, UUID key, UUID value) {
+        Set<UUID> values = index.get(key);
+        if (values == null || !values.remove(value)) {
+            return false;
+        }
+        if (values.isEmpty()) {
+            index.remove(key);
+        }
+        return true;
+    }
+}
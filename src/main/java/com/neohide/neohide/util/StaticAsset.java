@@ -0,0 +1,163 @@
+package com.neohide.neohide.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Статический файл панели, загруженный один раз.
+ *
+ * Сжатые варианты (gzip, deflate) готовятся при загрузке, у каждого
+ * варианта своё строгое ETag, вычисленное по содержимому.
+ * Вариант хранится, только если он меньше исходного файла.
+ */
+public final class StaticAsset {
+
+    /**
+     * Представление файла для конкретной кодировки
+     */
+    public static final class Variant {
+        private final byte[] body;
+        private final String encoding;
+        private final String etag;
+
+        private Variant(byte[] body, String encoding, String etag) {
+            this.body = body;
+            this.encoding = encoding;
+            this.etag = etag;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        /**
+         * Значение Content-Encoding или null для исходного файла
+         */
+        public String getEncoding() {
+            return encoding;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+
+    private final String contentType;
+    private final Variant identity;
+    private final Variant gzip;
+    private final Variant deflate;
+
+    private StaticAsset(String contentType, Variant identity, Variant gzip, Variant deflate) {
+        this.contentType = contentType;
+        this.identity = identity;
+        this.gzip = gzip;
+        this.deflate = deflate;
+    }
+
+    public static StaticAsset load(InputStream in, String contentType) throws IOException {
+        byte[] body;
+        try (InputStream input = in) {
+            body = input.readAllBytes();
+        }
+
+        String hash = hash(body);
+        Variant identity = new Variant(body, null, "\"" + hash + "\"");
+
+        byte[] gzipped = compress(body, true);
+        byte[] deflated = compress(body, false);
+
+        return new StaticAsset(contentType, identity,
+                gzipped.length < body.length ? new Variant(gzipped, "gzip", "\"" + hash + "-gz\"") : null,
+                deflated.length < body.length ? new Variant(deflated, "deflate", "\"" + hash + "-df\"") : null);
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    /**
+     * Выбрать вариант по заголовку Accept-Encoding: gzip, затем deflate, иначе исходный
+     */
+    public Variant select(String acceptEncoding) {
+        if (acceptEncoding != null) {
+            if (gzip != null && accepts(acceptEncoding, "gzip")) {
+                return gzip;
+            }
+            if (deflate != null && accepts(acceptEncoding, "deflate")) {
+                return deflate;
+            }
+        }
+        return identity;
+    }
+
+    /**
+     * Совпадает ли If-None-Match с ETag варианта (слабое сравнение, как требует RFC 7232)
+     */
+    public static boolean matches(String ifNoneMatch, Variant variant) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*")) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals(variant.etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Кодировка принимается, если указана без q=0
+    private static boolean accepts(String acceptEncoding, String encoding) {
+        for (String part : acceptEncoding.split(",")) {
+            String[] params = part.trim().split(";");
+            if (!params[0].trim().equalsIgnoreCase(encoding)) {
+                continue;
+            }
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(param.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static byte[] compress(byte[] body, boolean gzip) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 2 + 64);
+        try (DeflaterOutputStream stream = gzip ? new GZIPOutputStream(out) : new DeflaterOutputStream(out)) {
+            stream.write(body);
+        }
+        return out.toByteArray();
+    }
+
+    private static String hash(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            StringBuilder hex = new StringBuilder(32);
+            for (int i = 0; i < 16; i++) {
+                hex.append(Character.forDigit((digest[i] >> 4) & 0xF, 16))
+                        .append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+}
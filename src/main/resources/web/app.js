@@ -0,0 +1,312 @@
+let authToken = '';
+let autoRefreshInterval = null;
+let eventSource = null;
+let refreshTimer = null;
+const LIVE_FEED_LIMIT = 50;
+
+function connect() {
+    authToken = document.getElementById('authToken').value.trim();
+    if (!authToken) {
+        showMessage('Введите токен авторизации', 'error');
+        return;
+    }
+
+    // Сохраняем токен в localStorage
+    localStorage.setItem('neohide_token', authToken);
+
+    // Скрываем панель авторизации, показываем dashboard
+    document.getElementById('authPanel').style.display = 'none';
+    document.getElementById('dashboard').style.display = 'block';
+
+    // Обновляем статус
+    updateStatus('Подключение...', 'disconnected');
+
+    // Загружаем данные
+    refreshData();
+
+    // Дальше сервер сам присылает изменения; без EventSource — опрос каждые 10 секунд
+    if (autoRefreshInterval) {
+        clearInterval(autoRefreshInterval);
+        autoRefreshInterval = null;
+    }
+    if (window.EventSource) {
+        openEventStream();
+    } else {
+        autoRefreshInterval = setInterval(refreshData, 10000);
+    }
+}
+
+function openEventStream() {
+    closeEventStream();
+    eventSource = new EventSource('/api/events?token=' + encodeURIComponent(authToken));
+
+    eventSource.onopen = () => updateStatus('Подключено (живая лента)', 'connected');
+
+    // Изменения состояния — перечитываем данные, несколько событий подряд схлопываются
+    ['hidden_commands', 'config_changed', 'player_state'].forEach(type => {
+        eventSource.addEventListener(type, scheduleRefresh);
+    });
+
+    eventSource.addEventListener('command_blocked', event => {
+        const data = JSON.parse(event.data);
+        addFeedEntry(data.timestamp, `🚫 ${data.player} пытался выполнить /${data.command}`);
+    });
+
+    eventSource.addEventListener('security_alert', event => {
+        const data = JSON.parse(event.data);
+        addFeedEntry(data.timestamp, `🛡️ ${data.player} получил защищённое право ${data.permission}`);
+    });
+
+    // Не успевали читать — сервер отключил; перечитываем всё и подключаемся заново
+    eventSource.addEventListener('overflow', () => {
+        refreshData(true);
+    });
+}
+
+function closeEventStream() {
+    if (eventSource) {
+        eventSource.close();
+        eventSource = null;
+    }
+}
+
+function scheduleRefresh() {
+    if (refreshTimer) return;
+    refreshTimer = setTimeout(() => {
+        refreshTimer = null;
+        refreshData(true);
+    }, 500);
+}
+
+function addFeedEntry(timestamp, text) {
+    const feed = document.getElementById('liveFeed');
+    if (!feed.querySelector('.log-entry')) {
+        feed.innerHTML = '';
+    }
+
+    const entry = document.createElement('div');
+    entry.className = 'log-entry';
+    entry.textContent = new Date(timestamp).toLocaleTimeString() + '  ' + text;
+    feed.insertBefore(entry, feed.firstChild);
+
+    while (feed.childElementCount > LIVE_FEED_LIMIT) {
+        feed.lastChild.remove();
+    }
+}
+
+function updateStatus(text, type) {
+    const statusText = document.getElementById('statusText');
+    const statusBadge = document.getElementById('statusBadge');
+
+    statusText.textContent = text;
+    statusBadge.textContent = type === 'connected' ? 'Подключено' : 'Отключено';
+    statusBadge.className = 'status-badge ' + (type === 'connected' ? 'status-connected' : 'status-disconnected');
+}
+
+function showMessage(message, type) {
+    const messagesDiv = document.getElementById('messages');
+    const messageDiv = document.createElement('div');
+    messageDiv.className = type === 'error' ? 'error-message' : 'success-message';
+    messageDiv.textContent = message;
+
+    messagesDiv.appendChild(messageDiv);
+
+    // Автоматически удаляем сообщение через 5 секунд
+    setTimeout(() => {
+        if (messageDiv.parentNode) {
+            messageDiv.remove();
+        }
+    }, 5000);
+}
+
+async function apiCall(endpoint, method = 'GET', params = {}) {
+    const url = '/api' + endpoint;
+    let options = {
+        method: method,
+        headers: {
+            'X-Auth-Token': authToken,
+            'Content-Type': 'application/x-www-form-urlencoded; charset=UTF-8'
+        }
+    };
+
+    if (method === 'POST' && Object.keys(params).length > 0) {
+        const formData = new URLSearchParams();
+        for (const [key, value] of Object.entries(params)) {
+            formData.append(key, value);
+        }
+        options.body = formData;
+    } else if (method === 'GET' && Object.keys(params).length > 0) {
+        const query = new URLSearchParams(params).toString();
+        options.url = url + '?' + query;
+    }
+
+    try {
+        const response = await fetch(url, options);
+
+        if (response.status === 401) {
+            updateStatus('Неверный токен', 'disconnected');
+            showMessage('Неверный токен авторизации. Проверьте config.yml', 'error');
+            return null;
+        }
+
+        if (!response.ok) {
+            throw new Error(`HTTP ${response.status}: ${response.statusText}`);
+        }
+
+        const data = await response.json();
+        updateStatus('Подключено', 'connected');
+        return data;
+
+    } catch (error) {
+        console.error('Ошибка API:', error);
+        updateStatus('Ошибка подключения', 'disconnected');
+        showMessage('Ошибка подключения к серверу: ' + error.message, 'error');
+        return null;
+    }
+}
+
+async function refreshData(silent = false) {
+    try {
+        // Получаем статус
+        const status = await apiCall('/status');
+        if (!status) return;
+
+        // Обновляем переключатель защиты
+        document.getElementById('protectionToggle').checked = status.protection_enabled;
+        document.getElementById('protectionStatus').textContent = status.protection_enabled ? 'Активна' : 'Отключена';
+        document.getElementById('protectionStatus').style.color = status.protection_enabled ? '#4CAF50' : '#f44336';
+
+        // Получаем статистику
+        const stats = await apiCall('/stats');
+        if (!stats) return;
+
+        document.getElementById('hiddenCount').textContent = stats.hidden_commands || 0;
+        document.getElementById('onlineCount').textContent = stats.online_players || 0;
+        document.getElementById('vanishedCount').textContent = stats.vanished_players || 0;
+
+        // Получаем команды
+        const commands = await apiCall('/commands');
+        if (!commands) return;
+
+        const commandsList = document.getElementById('commandsList');
+        commandsList.innerHTML = '';
+
+        if (commands.length === 0) {
+            commandsList.innerHTML = '<p style="text-align: center; color: #888;">Нет скрытых команд</p>';
+        } else {
+            commands.forEach(cmd => {
+                const item = document.createElement('div');
+                item.className = 'command-item';
+                item.innerHTML = `
+                    <div>
+                        <strong style="color: #667eea;">/${cmd}</strong>
+                    </div>
+                    <button onclick="unhideCommand('${cmd}')">Показать команду</button>
+                `;
+                commandsList.appendChild(item);
+            });
+        }
+
+        if (!silent) {
+            showMessage('Данные успешно обновлены', 'success');
+        }
+
+    } catch (error) {
+        console.error('Ошибка обновления данных:', error);
+        showMessage('Ошибка при обновлении данных', 'error');
+    }
+}
+
+async function hideCommand() {
+    const command = document.getElementById('commandInput').value.trim();
+    if (!command) {
+        showMessage('Введите команду для скрытия', 'error');
+        return;
+    }
+
+    // Убираем слеш если есть
+    const cleanCommand = command.replace(/^\//, '');
+
+    const result = await apiCall('/hide', 'POST', { command: cleanCommand });
+    if (result && result.success) {
+        document.getElementById('commandInput').value = '';
+        showMessage(result.message, 'success');
+        refreshData();
+    }
+}
+
+async function unhideCommand(command) {
+    if (!confirm(`Вы действительно хотите показать команду /${command}?`)) return;
+
+    const result = await apiCall('/unhide', 'POST', { command: command });
+    if (result && result.success) {
+        showMessage(result.message, 'success');
+        refreshData();
+    }
+}
+
+async function toggleProtection() {
+    const enabled = document.getElementById('protectionToggle').checked;
+    const result = await apiCall('/toggle', 'POST', { enabled: enabled });
+    if (result && result.success) {
+        showMessage(result.message, 'success');
+        refreshData();
+    } else {
+        // Откатываем переключатель если ошибка
+        document.getElementById('protectionToggle').checked = !enabled;
+    }
+}
+
+async function showLogs() {
+    const logsSection = document.getElementById('logsSection');
+    const logsList = document.getElementById('logsList');
+
+    if (logsSection.style.display === 'none') {
+        logsList.innerHTML = '<p style="text-align: center; color: #888;">Загрузка логов...</p>';
+        logsSection.style.display = 'block';
+
+        // Здесь можно добавить загрузку логов когда будет API
+        setTimeout(() => {
+            logsList.innerHTML = '<p style="text-align: center; color: #888;">Функция логов в разработке</p>';
+        }, 1000);
+    } else {
+        logsSection.style.display = 'none';
+    }
+}
+
+async function reloadConfig() {
+    if (!confirm('Перезагрузить конфигурацию плагина?\nИспользуйте команду /neohide reload в игре')) return;
+    showMessage('Для перезагрузки используйте /neohide reload в игре', 'error');
+}
+
+function disconnect() {
+    if (autoRefreshInterval) {
+        clearInterval(autoRefreshInterval);
+        autoRefreshInterval = null;
+    }
+    closeEventStream();
+
+    localStorage.removeItem('neohide_token');
+    document.getElementById('dashboard').style.display = 'none';
+    document.getElementById('authPanel').style.display = 'block';
+    document.getElementById('authToken').value = '';
+    updateStatus('Не подключено', 'disconnected');
+}
+
+// Проверяем сохраненный токен при загрузке
+window.onload = function() {
+    const savedToken = localStorage.getItem('neohide_token');
+    if (savedToken) {
+        document.getElementById('authToken').value = savedToken;
+        connect();
+    }
+
+    // Добавляем кнопку отключения
+    const header = document.querySelector('.header');
+    const disconnectBtn = document.createElement('button');
+    disconnectBtn.textContent = 'Выйти';
+    disconnectBtn.style.marginLeft = '20px';
+    disconnectBtn.style.background = 'linear-gradient(135deg, #f093fb 0%, #f5576c 100%)';
+    disconnectBtn.onclick = disconnect;
+    header.appendChild(disconnectBtn);
+};